@@ -12,7 +12,6 @@ import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Color;
-import android.graphics.RectF;
 import android.util.AttributeSet;
 import androidx.annotation.ColorInt;
 import androidx.annotation.FloatRange;
@@ -20,14 +19,24 @@ import androidx.annotation.IntDef;
 import androidx.annotation.Px;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.WeakHashMap;
 
 /**
  * A Shimmer is an object detailing all of the configuration options available for {@link
  * ShimmerFrameLayout}
+ *
+ * <p>Built Shimmers are immutable and interned, so equal configurations share one instance and can
+ * be compared by identity. They can be built on any thread.
  */
 public class Shimmer {
   private static final int COMPONENT_COUNT = 4;
 
+  // Weak on both sides, so that configurations nothing uses any more can be collected
+  private static final WeakHashMap<Shimmer, WeakReference<Shimmer>> sInterned =
+      new WeakHashMap<>();
+
   /** The shape of the shimmer's highlight. By default LINEAR is used. */
   @Retention(RetentionPolicy.SOURCE)
   @IntDef({Shape.LINEAR, Shape.RADIAL})
@@ -53,9 +62,21 @@ public class Shimmer {
     int BOTTOM_TO_TOP = 3;
   }
 
+  /** How the shimmer's animation is driven. By default ANIMATOR is used. */
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({Engine.ANIMATOR, Engine.FRAME_CLOCK})
+  public @interface Engine {
+    /** Every drawable runs its own {@link ValueAnimator}. */
+    int ANIMATOR = 0;
+    /**
+     * Drawables compute their phase from the frame time of the shared {@link ShimmerClock}, so no
+     * animator is allocated, restarts are free and all shimmers sweep in sync.
+     */
+    int FRAME_CLOCK = 1;
+  }
+
   final float[] positions = new float[COMPONENT_COUNT];
   final int[] colors = new int[COMPONENT_COUNT];
-  final RectF bounds = new RectF();
 
   @Direction int direction = Direction.LEFT_TO_RIGHT;
   @ColorInt int highlightColor = Color.WHITE;
@@ -79,9 +100,64 @@ public class Shimmer {
   long animationDuration = 1000L;
   long repeatDelay;
   long startDelay;
+  @Engine int engine = Engine.ANIMATOR;
+  boolean windowAligned = false;
+  float maxFrameRate = 0f;
 
   Shimmer() {}
 
+  private Shimmer(Shimmer other) {
+    direction = other.direction;
+    highlightColor = other.highlightColor;
+    baseColor = other.baseColor;
+    shape = other.shape;
+    fixedWidth = other.fixedWidth;
+    fixedHeight = other.fixedHeight;
+    widthRatio = other.widthRatio;
+    heightRatio = other.heightRatio;
+    intensity = other.intensity;
+    dropoff = other.dropoff;
+    tilt = other.tilt;
+    clipToChildren = other.clipToChildren;
+    autoStart = other.autoStart;
+    alphaShimmer = other.alphaShimmer;
+    repeatCount = other.repeatCount;
+    repeatMode = other.repeatMode;
+    animationDuration = other.animationDuration;
+    repeatDelay = other.repeatDelay;
+    startDelay = other.startDelay;
+    engine = other.engine;
+    windowAligned = other.windowAligned;
+    maxFrameRate = other.maxFrameRate;
+  }
+
+  /** Return the shared instance equal to the given, freshly built Shimmer. */
+  private static Shimmer intern(Shimmer shimmer) {
+    synchronized (sInterned) {
+      final WeakReference<Shimmer> ref = sInterned.get(shimmer);
+      final Shimmer interned = ref != null ? ref.get() : null;
+      if (interned != null) {
+        return interned;
+      }
+      sInterned.put(shimmer, new WeakReference<>(shimmer));
+      return shimmer;
+    }
+  }
+
+  /**
+   * Return the Shimmer described by the given ShimmerFrameLayout attributes, built by a {@link
+   * ColorHighlightBuilder} when shimmer_colored is set and an {@link AlphaHighlightBuilder}
+   * otherwise.
+   */
+  static Shimmer fromAttributes(TypedArray a) {
+    final Builder<?> builder =
+        a.hasValue(R.styleable.ShimmerFrameLayout_shimmer_colored)
+                && a.getBoolean(R.styleable.ShimmerFrameLayout_shimmer_colored, false)
+            ? new ColorHighlightBuilder()
+            : new AlphaHighlightBuilder();
+    return builder.consumeAttributes(a).build();
+  }
+
   int width(int width) {
     return fixedWidth > 0 ? fixedWidth : Math.round(widthRatio * width);
   }
@@ -90,6 +166,17 @@ public class Shimmer {
     return fixedHeight > 0 ? fixedHeight : Math.round(heightRatio * height);
   }
 
+  /**
+   * Return the animated value at the end of one cycle. Values above 1 make up the repeat delay,
+   * during which the highlight keeps moving away from the bounds.
+   */
+  float maxAnimatedValue() {
+    if (animationDuration <= 0) {
+      return 1f;
+    }
+    return 1f + (float) repeatDelay / animationDuration;
+  }
+
   void updateColors() {
     switch (shape) {
       default:
@@ -126,15 +213,110 @@ public class Shimmer {
     }
   }
 
-  void updateBounds(int viewWidth, int viewHeight) {
-    int magnitude = Math.max(viewWidth, viewHeight);
-    double rad = Math.PI / 2f - Math.toRadians(tilt % 90f);
-    double hyp = magnitude / Math.sin(rad);
-    int padding = 3 * Math.round((float) (hyp - magnitude) / 2f);
-    bounds.set(-padding, -padding, width(viewWidth) + padding, height(viewHeight) + padding);
+  /** Return whether the other Shimmer produces the same gradient, in the same size. */
+  boolean hasSameGradient(Shimmer other) {
+    return shape == other.shape
+        && direction == other.direction
+        && alphaShimmer == other.alphaShimmer
+        && windowAligned == other.windowAligned
+        && fixedWidth == other.fixedWidth
+        && fixedHeight == other.fixedHeight
+        && Float.compare(widthRatio, other.widthRatio) == 0
+        && Float.compare(heightRatio, other.heightRatio) == 0
+        && Arrays.equals(colors, other.colors)
+        && Arrays.equals(positions, other.positions);
+  }
+
+  /**
+   * Return whether the other Shimmer sweeps along the same path, and leaves the bounds at the same
+   * point of it. That point depends on the highlight's shape, size and stops.
+   */
+  boolean hasSameGeometry(Shimmer other) {
+    return shape == other.shape
+        && direction == other.direction
+        && windowAligned == other.windowAligned
+        && Float.compare(tilt, other.tilt) == 0
+        && fixedWidth == other.fixedWidth
+        && fixedHeight == other.fixedHeight
+        && Float.compare(widthRatio, other.widthRatio) == 0
+        && Float.compare(heightRatio, other.heightRatio) == 0
+        && Arrays.equals(positions, other.positions);
+  }
+
+  /**
+   * Return whether the other Shimmer animates with the same timing. The max frame rate is left
+   * out, it only decides which frames are drawn and is read on every frame.
+   */
+  boolean hasSameTiming(Shimmer other) {
+    return repeatCount == other.repeatCount
+        && repeatMode == other.repeatMode
+        && animationDuration == other.animationDuration
+        && repeatDelay == other.repeatDelay
+        && startDelay == other.startDelay;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Shimmer)) {
+      return false;
+    }
+    Shimmer other = (Shimmer) o;
+    return direction == other.direction
+        && highlightColor == other.highlightColor
+        && baseColor == other.baseColor
+        && shape == other.shape
+        && fixedWidth == other.fixedWidth
+        && fixedHeight == other.fixedHeight
+        && Float.compare(widthRatio, other.widthRatio) == 0
+        && Float.compare(heightRatio, other.heightRatio) == 0
+        && Float.compare(intensity, other.intensity) == 0
+        && Float.compare(dropoff, other.dropoff) == 0
+        && Float.compare(tilt, other.tilt) == 0
+        && clipToChildren == other.clipToChildren
+        && autoStart == other.autoStart
+        && alphaShimmer == other.alphaShimmer
+        && repeatCount == other.repeatCount
+        && repeatMode == other.repeatMode
+        && animationDuration == other.animationDuration
+        && repeatDelay == other.repeatDelay
+        && startDelay == other.startDelay
+        && engine == other.engine
+        && windowAligned == other.windowAligned
+        && Float.compare(maxFrameRate, other.maxFrameRate) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = direction;
+    result = 31 * result + highlightColor;
+    result = 31 * result + baseColor;
+    result = 31 * result + shape;
+    result = 31 * result + fixedWidth;
+    result = 31 * result + fixedHeight;
+    result = 31 * result + Float.floatToIntBits(widthRatio);
+    result = 31 * result + Float.floatToIntBits(heightRatio);
+    result = 31 * result + Float.floatToIntBits(intensity);
+    result = 31 * result + Float.floatToIntBits(dropoff);
+    result = 31 * result + Float.floatToIntBits(tilt);
+    result = 31 * result + (clipToChildren ? 1 : 0);
+    result = 31 * result + (autoStart ? 1 : 0);
+    result = 31 * result + (alphaShimmer ? 1 : 0);
+    result = 31 * result + repeatCount;
+    result = 31 * result + repeatMode;
+    result = 31 * result + (int) (animationDuration ^ (animationDuration >>> 32));
+    result = 31 * result + (int) (repeatDelay ^ (repeatDelay >>> 32));
+    result = 31 * result + (int) (startDelay ^ (startDelay >>> 32));
+    result = 31 * result + engine;
+    result = 31 * result + (windowAligned ? 1 : 0);
+    result = 31 * result + Float.floatToIntBits(maxFrameRate);
+    return result;
   }
 
   public abstract static class Builder<T extends Builder<T>> {
+    // Scratch configuration, never handed out; build() returns an immutable copy
     final Shimmer mShimmer = new Shimmer();
 
     // Gets around unchecked cast
@@ -246,6 +428,28 @@ public class Shimmer {
       if (a.hasValue(R.styleable.ShimmerFrameLayout_shimmer_tilt)) {
         setTilt(a.getFloat(R.styleable.ShimmerFrameLayout_shimmer_tilt, mShimmer.tilt));
       }
+      if (a.hasValue(R.styleable.ShimmerFrameLayout_shimmer_window_aligned)) {
+        setWindowAligned(
+            a.getBoolean(
+                R.styleable.ShimmerFrameLayout_shimmer_window_aligned, mShimmer.windowAligned));
+      }
+      if (a.hasValue(R.styleable.ShimmerFrameLayout_shimmer_max_frame_rate)) {
+        setMaxFrameRate(
+            a.getFloat(
+                R.styleable.ShimmerFrameLayout_shimmer_max_frame_rate, mShimmer.maxFrameRate));
+      }
+      if (a.hasValue(R.styleable.ShimmerFrameLayout_shimmer_engine)) {
+        int engine = a.getInt(R.styleable.ShimmerFrameLayout_shimmer_engine, mShimmer.engine);
+        switch (engine) {
+          default:
+          case Engine.ANIMATOR:
+            setEngine(Engine.ANIMATOR);
+            break;
+          case Engine.FRAME_CLOCK:
+            setEngine(Engine.FRAME_CLOCK);
+            break;
+        }
+      }
       return getThis();
     }
 
@@ -267,6 +471,9 @@ public class Shimmer {
       setRepeatDelay(other.repeatDelay);
       setStartDelay(other.startDelay);
       setDuration(other.animationDuration);
+      setEngine(other.engine);
+      setWindowAligned(other.windowAligned);
+      setMaxFrameRate(other.maxFrameRate);
       mShimmer.baseColor = other.baseColor;
       mShimmer.highlightColor = other.highlightColor;
       return getThis();
@@ -278,6 +485,38 @@ public class Shimmer {
       return getThis();
     }
 
+    /**
+     * Sets how the shimmer's animation is driven. See {@link Engine}. A clock set on the drawable
+     * or layout takes precedence.
+     */
+    public T setEngine(@Engine int engine) {
+      mShimmer.engine = engine;
+      return getThis();
+    }
+
+    /**
+     * Sets whether the gradient is laid out across the whole window instead of each view, so that
+     * every shimmer on screen with this configuration shows a slice of one continuous sweep, and
+     * they all share one gradient.
+     */
+    public T setWindowAligned(boolean windowAligned) {
+      mShimmer.windowAligned = windowAligned;
+      return getThis();
+    }
+
+    /**
+     * Caps how many frames per second the shimmer draws, for example 30 or 60, regardless of the
+     * display's refresh rate. Where supported, the host view also asks the display for that rate.
+     * 0 means no cap, which is the default.
+     */
+    public T setMaxFrameRate(float framesPerSecond) {
+      if (framesPerSecond < 0f) {
+        throw new IllegalArgumentException("Given a negative max frame rate: " + framesPerSecond);
+      }
+      mShimmer.maxFrameRate = framesPerSecond;
+      return getThis();
+    }
+
     /** Sets the shape of the shimmer. See {@link Shape}. */
     public T setShape(@Shape int shape) {
       mShimmer.shape = shape;
@@ -423,10 +662,15 @@ public class Shimmer {
       return getThis();
     }
 
+    /**
+     * Return an immutable Shimmer with this builder's configuration. Building again, after further
+     * changes to the builder, leaves the Shimmers built so far untouched.
+     */
     public Shimmer build() {
-      mShimmer.updateColors();
-      mShimmer.updatePositions();
-      return mShimmer;
+      final Shimmer shimmer = new Shimmer(mShimmer);
+      shimmer.updateColors();
+      shimmer.updatePositions();
+      return intern(shimmer);
     }
 
     private static float clamp(float min, float max, float value) {
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * A timing source that can be shared between many {@link ShimmerDrawable}s. Instead of every
+ * drawable running its own {@link android.animation.ValueAnimator}, a single frame callback ticks
+ * all attached drawables, and each drawable derives its phase from the clock's time. Drawables
+ * sharing a clock therefore sweep in sync.
+ *
+ * <p>A clock only posts frame callbacks while at least one drawable is attached to it. All methods
+ * must be called from the main thread.
+ */
+@MainThread
+public final class ShimmerClock {
+  private static final long FALLBACK_FRAME_DELAY_MILLIS = 16L;
+
+  private static ShimmerClock sInstance;
+
+  /** Receives a callback for each frame the clock ticks. */
+  interface Listener {
+    void onShimmerFrame(long frameTimeMillis);
+  }
+
+  private final ShimmerListenerList<Listener> mListeners = new ShimmerListenerList<>();
+  private final ShimmerListenerList.Dispatcher<Listener> mFrameDispatcher =
+      new ShimmerListenerList.Dispatcher<Listener>() {
+        @Override
+        public void dispatch(@NonNull Listener listener) {
+          listener.onShimmerFrame(mFrameTimeMillis);
+        }
+      };
+  private final long mEpochMillis = SystemClock.uptimeMillis();
+
+  private final FrameDriver mFrameDriver;
+  private long mFrameTimeMillis = -1L;
+  private boolean mRunning;
+
+  /** Return the process-wide clock. */
+  public static ShimmerClock getInstance() {
+    if (sInstance == null) {
+      sInstance = new ShimmerClock();
+    }
+    return sInstance;
+  }
+
+  public ShimmerClock() {
+    mFrameDriver =
+        Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+            ? new ChoreographerFrameDriver(this)
+            : new HandlerFrameDriver(this);
+  }
+
+  /** Return the time at which the clock started counting, in {@link SystemClock#uptimeMillis()}. */
+  public long getEpochMillis() {
+    return mEpochMillis;
+  }
+
+  /**
+   * Return the time of the frame currently being processed, or the current time if the clock is
+   * not ticking.
+   */
+  public long getFrameTimeMillis() {
+    return mRunning && mFrameTimeMillis >= 0 ? mFrameTimeMillis : SystemClock.uptimeMillis();
+  }
+
+  /** Return the number of drawables currently driven by this clock. */
+  public int getListenerCount() {
+    return mListeners.size();
+  }
+
+  void addListener(@NonNull Listener listener) {
+    if (!mListeners.add(listener)) {
+      return;
+    }
+    if (!mRunning) {
+      mRunning = true;
+      mFrameTimeMillis = -1L;
+      mFrameDriver.postFrame();
+    }
+  }
+
+  void removeListener(@NonNull Listener listener) {
+    mListeners.remove(listener);
+    if (mListeners.isEmpty() && mRunning) {
+      mRunning = false;
+      mFrameDriver.cancelFrame();
+    }
+  }
+
+  void doFrame(long frameTimeMillis) {
+    if (!mRunning) {
+      return;
+    }
+    mFrameTimeMillis = frameTimeMillis;
+    mListeners.dispatch(mFrameDispatcher);
+    if (mRunning) {
+      mFrameDriver.postFrame();
+    }
+  }
+
+  private interface FrameDriver {
+    void postFrame();
+
+    void cancelFrame();
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private static final class ChoreographerFrameDriver
+      implements FrameDriver, Choreographer.FrameCallback {
+    private final ShimmerClock mClock;
+
+    ChoreographerFrameDriver(ShimmerClock clock) {
+      mClock = clock;
+    }
+
+    @Override
+    public void postFrame() {
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void cancelFrame() {
+      Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      mClock.doFrame(frameTimeNanos / 1000000L);
+    }
+  }
+
+  private static final class HandlerFrameDriver implements FrameDriver, Runnable {
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ShimmerClock mClock;
+
+    HandlerFrameDriver(ShimmerClock clock) {
+      mClock = clock;
+    }
+
+    @Override
+    public void postFrame() {
+      mHandler.postDelayed(this, FALLBACK_FRAME_DELAY_MILLIS);
+    }
+
+    @Override
+    public void cancelFrame() {
+      mHandler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+      mClock.doFrame(SystemClock.uptimeMillis());
+    }
+  }
+}
@@ -9,53 +9,195 @@
 package com.facebook.shimmer;
 
 import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.ColorFilter;
-import android.graphics.LinearGradient;
+import android.graphics.ComposeShader;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PixelFormat;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
-import android.graphics.RadialGradient;
 import android.graphics.Rect;
 import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.animation.AnimationUtils;
 import android.view.animation.LinearInterpolator;
+import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import java.io.IOException;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
+/**
+ * Draws a {@link Shimmer}. From Nougat onwards it can also be declared in a drawable resource with
+ * a {@code <com.facebook.shimmer.ShimmerDrawable>} tag and the attributes of {@link
+ * ShimmerFrameLayout}, plus {@code shimmer_direct_color} to draw in direct mode. Drawables created
+ * from the same resource share their {@link ConstantState}, so they share one configuration until
+ * {@link #mutate()} is called. The clock and phase offset are set per drawable and never shared.
+ */
 public final class ShimmerDrawable extends Drawable {
+  private static final PorterDuffXfermode ALPHA_XFERMODE =
+      new PorterDuffXfermode(PorterDuff.Mode.DST_IN);
+  private static final PorterDuffXfermode COLOR_XFERMODE =
+      new PorterDuffXfermode(PorterDuff.Mode.SRC_IN);
+  // Frames arrive at vsync, so a frame somewhat early for the cap still has to be drawn
+  private static final float FRAME_INTERVAL_TOLERANCE = 0.75f;
+
+  // Reasons for holding the shimmer on a static frame
+  private static final int HOLD_QUALITY = 1;
+  private static final int HOLD_MOTION = 2;
+  private static final int HOLD_SCROLL = 4;
+
   private final ValueAnimator.AnimatorUpdateListener mUpdateListener =
       new ValueAnimator.AnimatorUpdateListener() {
         @Override
         public void onAnimationUpdate(ValueAnimator animation) {
-          invalidateSelf();
+          if (getCallback() == null) {
+            // Nothing draws this drawable any more, for example an ImageView that dropped it
+            stopShimmer();
+            return;
+          }
+          invalidateForAnimatedValue(
+              (float) animation.getAnimatedValue(), AnimationUtils.currentAnimationTimeMillis());
+        }
+      };
+
+  private final ShimmerQualityController.Listener mQualityListener =
+      new ShimmerQualityController.Listener() {
+        @Override
+        public void onQualityTierChanged(int tier) {
+          applyQualityTier(tier);
+        }
+      };
+
+  private final ShimmerMotionPolicy.Listener mMotionListener =
+      new ShimmerMotionPolicy.Listener() {
+        @Override
+        public void onMotionPolicyChanged(@NonNull ShimmerMotionPolicy policy) {
+          applyMotionPolicy(policy);
+        }
+      };
+
+  private final ShimmerClock.Listener mClockListener =
+      new ShimmerClock.Listener() {
+        @Override
+        public void onShimmerFrame(long frameTimeMillis) {
+          onClockFrame(frameTimeMillis);
         }
       };
 
   private final Paint mShimmerPaint = new Paint();
   private final Rect mDrawRect = new Rect();
   private final Matrix mShaderMatrix = new Matrix();
+  private final Paint mMaskPaint = new Paint();
+
+  private final Paint mDirectPaint = new Paint();
+
+  private @Nullable BitmapShader mMaskShader;
+  private @Nullable Shader mMaskGradient;
+  private boolean mDirectMode;
+  private @Nullable Path mDirectPath;
+  private @ColorInt int mDirectColor;
 
   private @Nullable ValueAnimator mValueAnimator;
   private float mStaticAnimationProgress = -1f;
+  private boolean mHighlightOffscreen;
+  private long mLastFrameMillis;
+
+  // The clock set through setShimmerClock, and the one actually driving this drawable
+  private @Nullable ShimmerClock mExplicitClock;
+  private @Nullable ShimmerClock mClock;
+  private boolean mClockStarted;
+  private long mClockStartMillis;
+  private long mPhaseOffsetMillis;
+  // How long the clock-driven sweep has been paused since it started, and when it last paused
+  private long mPausedMillis;
+  private long mPauseFrameMillis;
+  private float mClockAnimatedValue;
+
+  private boolean mPaused;
+  private long mPausedPlayTime;
+  // Set while hidden, for a shimmer that was started or would have auto-started
+  private boolean mStartWhenVisible;
+
+  private @Nullable ShimmerQualityController mQualityController;
+  private boolean mQualityListenerAdded;
+  private @ShimmerQualityController.Tier int mQualityTier = ShimmerQualityController.Tier.FULL;
+  private @Nullable ShimmerMotionPolicy mMotionPolicy;
+  private boolean mMotionListenerAdded;
+  private float mMotionStaticProgress = -1f;
+  private int mHoldReasons;
+  private boolean mStartAfterHold;
+
+  private int mWindowOffsetX;
+  private int mWindowOffsetY;
+  private int mWindowWidth;
+  private int mWindowHeight;
 
   private @Nullable Shimmer mShimmer;
+  private @Nullable ShimmerFramePlan mFramePlan;
+
+  private ShimmerState mState;
+  private boolean mMutated;
 
   public ShimmerDrawable() {
+    this(new ShimmerState());
+  }
+
+  private ShimmerDrawable(ShimmerState state) {
     mShimmerPaint.setAntiAlias(true);
+    mMaskPaint.setAntiAlias(true);
+    mDirectPaint.setAntiAlias(true);
+    mState = state;
+    mDirectMode = state.mDirectMode;
+    mDirectColor = state.mDirectColor;
+    if (state.mShimmer != null) {
+      setShimmer(state.mShimmer);
+    }
   }
 
+  /**
+   * Sets the Shimmer to draw. Only the parts that differ from the current Shimmer are rebuilt, and
+   * a running animation keeps its phase unless the timing changed, so this is cheap to call on
+   * every bind.
+   */
   public void setShimmer(@Nullable Shimmer shimmer) {
+    // Built Shimmers are interned, so equal configurations are the same instance
+    final Shimmer previous = mShimmer;
+    if (shimmer == previous) {
+      return;
+    }
     mShimmer = shimmer;
-    if (mShimmer != null) {
-      mShimmerPaint.setXfermode(
-          new PorterDuffXfermode(
-              mShimmer.alphaShimmer ? PorterDuff.Mode.DST_IN : PorterDuff.Mode.SRC_IN));
+    mState.mShimmer = shimmer;
+    if (mShimmer == null) {
+      invalidateSelf();
+      return;
+    }
+    mShimmerPaint.setXfermode(mShimmer.alphaShimmer ? ALPHA_XFERMODE : COLOR_XFERMODE);
+    if (previous == null || previous.engine != mShimmer.engine) {
+      updateClock();
+    }
+    if (previous == null || !previous.hasSameGradient(mShimmer)) {
+      updateShader();
+      updateMaskShader();
+      updateDirectShader();
+    }
+    if (previous == null || !previous.hasSameGeometry(mShimmer)) {
+      updateFramePlan();
+    }
+    if (previous == null || !previous.hasSameTiming(mShimmer)) {
+      updateValueAnimator();
     }
-    updateShader();
-    updateValueAnimator();
     invalidateSelf();
   }
 
@@ -63,27 +205,187 @@ public final class ShimmerDrawable extends Drawable {
     return mShimmer;
   }
 
-  /** Starts the shimmer animation. */
+  /**
+   * Drives this drawable from the given {@link ShimmerClock} instead of its own animator. Pass
+   * null to go back to the Shimmer's {@link Shimmer.Engine}. The running state is carried over.
+   */
+  public void setShimmerClock(@Nullable ShimmerClock clock) {
+    if (clock == mExplicitClock) {
+      return;
+    }
+    mExplicitClock = clock;
+    updateClock();
+  }
+
+  /** Return the clock set through {@link #setShimmerClock(ShimmerClock)}, if any. */
+  public @Nullable ShimmerClock getShimmerClock() {
+    return mExplicitClock;
+  }
+
+  /**
+   * Delays this drawable's sweep behind the others on its {@link ShimmerClock} by the given time.
+   * Giving each row of a list {@code index * stagger} makes the rows shimmer in a cascade while
+   * still sharing one clock and one frame callback. Only applies while the drawable is driven by a
+   * clock, see {@link #setShimmerClock(ShimmerClock)} and {@link Shimmer.Engine#FRAME_CLOCK}.
+   */
+  public void setPhaseOffset(long offsetMillis) {
+    if (offsetMillis == mPhaseOffsetMillis) {
+      return;
+    }
+    mPhaseOffsetMillis = offsetMillis;
+    if (mClockStarted && mClock != null) {
+      onClockFrame(mClock.getFrameTimeMillis());
+    }
+  }
+
+  public long getPhaseOffset() {
+    return mPhaseOffsetMillis;
+  }
+
+  private void updateClock() {
+    final ShimmerClock clock;
+    if (mExplicitClock != null) {
+      clock = mExplicitClock;
+    } else if (mShimmer != null && mShimmer.engine == Shimmer.Engine.FRAME_CLOCK) {
+      clock = ShimmerClock.getInstance();
+    } else {
+      clock = null;
+    }
+    if (clock == mClock) {
+      return;
+    }
+    final boolean started = isShimmerStarted();
+    stopShimmer();
+    mClock = clock;
+    updateValueAnimator();
+    if (started) {
+      startShimmer();
+    }
+  }
+
+  /**
+   * Starts the shimmer animation, or resumes it if it was paused. A hidden drawable only starts
+   * once {@link #setVisible(boolean, boolean)} shows it again.
+   */
   public void startShimmer() {
-    if (mValueAnimator != null && !isShimmerStarted() && getCallback() != null) {
+    if (!isVisible()) {
+      mStartWhenVisible = mShimmer != null && getCallback() != null;
+      return;
+    }
+    updateHoldsBeforeStart();
+    if (mHoldReasons != 0) {
+      // Started for real once nothing holds the shimmer any more
+      mStartAfterHold = mShimmer != null && getCallback() != null;
+      updatePolicyListeners();
+      return;
+    }
+    if (mPaused) {
+      resumeShimmer();
+      return;
+    }
+    if (mClock != null) {
+      if (mShimmer != null && !mClockStarted && getCallback() != null) {
+        startClock();
+      }
+    } else if (mValueAnimator != null && !isShimmerStarted() && getCallback() != null) {
       mValueAnimator.start();
     }
+    updatePolicyListeners();
   }
 
   /** Stops the shimmer animation. */
   public void stopShimmer() {
+    mPaused = false;
+    mStartAfterHold = false;
+    mStartWhenVisible = false;
+    if (mClockStarted) {
+      mClockStarted = false;
+      if (mClock != null) {
+        mClock.removeListener(mClockListener);
+      }
+    }
     if (mValueAnimator != null && isShimmerStarted()) {
       mValueAnimator.cancel();
     }
+    updatePolicyListeners();
+  }
+
+  /**
+   * Pauses a started shimmer animation, keeping its phase. A paused shimmer does not count as
+   * started, and resumes where it left off on {@link #resumeShimmer()} or {@link #startShimmer()}.
+   * A shimmer driven by a {@link ShimmerClock} then lags behind the other drawables on the clock by
+   * the time it spent paused, until it is stopped and started again.
+   */
+  public void pauseShimmer() {
+    if (mHoldReasons != 0) {
+      mStartAfterHold = false;
+    }
+    if (mPaused || !isShimmerStarted()) {
+      updatePolicyListeners();
+      return;
+    }
+    if (mClock != null) {
+      mClockStarted = false;
+      mClock.removeListener(mClockListener);
+      mPauseFrameMillis = mClock.getFrameTimeMillis();
+    } else if (mValueAnimator != null) {
+      mPausedPlayTime = mValueAnimator.getCurrentPlayTime();
+      mValueAnimator.cancel();
+    }
+    mPaused = true;
+    updatePolicyListeners();
+  }
+
+  /** Resumes a shimmer animation paused by {@link #pauseShimmer()}. */
+  public void resumeShimmer() {
+    if (!mPaused || getCallback() == null) {
+      return;
+    }
+    if (!isVisible()) {
+      mStartWhenVisible = true;
+      return;
+    }
+    updateHoldsBeforeStart();
+    if (mHoldReasons != 0) {
+      mStartAfterHold = true;
+      updatePolicyListeners();
+      return;
+    }
+    mPaused = false;
+    if (mClock != null) {
+      if (mShimmer != null) {
+        // Continue from the paused phase, lagging behind the clock until restarted
+        mPausedMillis += mClock.getFrameTimeMillis() - mPauseFrameMillis;
+        mClockStarted = true;
+        mClock.addListener(mClockListener);
+      }
+    } else if (mValueAnimator != null) {
+      mValueAnimator.start();
+      mValueAnimator.setCurrentPlayTime(mPausedPlayTime);
+    }
+    updatePolicyListeners();
+  }
+
+  /** Return whether the shimmer animation is paused. */
+  public boolean isShimmerPaused() {
+    return mPaused;
   }
 
   /** Return whether the shimmer animation has been started. */
   public boolean isShimmerStarted() {
+    if (mClock != null) {
+      return mClockStarted;
+    }
     return mValueAnimator != null && mValueAnimator.isStarted();
   }
 
   /** Return whether the shimmer animation is running. */
   public boolean isShimmerRunning() {
+    if (mClock != null) {
+      return mClockStarted
+          && mShimmer != null
+          && mClock.getFrameTimeMillis() >= mClockStartMillis + mPausedMillis + mShimmer.startDelay;
+    }
     return mValueAnimator != null && mValueAnimator.isRunning();
   }
 
@@ -92,6 +394,9 @@ public final class ShimmerDrawable extends Drawable {
     super.onBoundsChange(bounds);
     mDrawRect.set(bounds);
     updateShader();
+    updateMaskShader();
+    updateDirectShader();
+    updateFramePlan();
     maybeStartShimmer();
   }
 
@@ -110,48 +415,83 @@ public final class ShimmerDrawable extends Drawable {
 
   @Override
   public void draw(@NonNull Canvas canvas) {
-    if (mShimmer == null || mShimmerPaint.getShader() == null) {
+    if (mShimmer == null || mFramePlan == null || !isVisible()) {
+      return;
+    }
+
+    if (mDirectMode) {
+      final Paint paint = getDirectPaint();
+      if (paint != null) {
+        if (mDirectPath != null) {
+          canvas.drawPath(mDirectPath, paint);
+        } else {
+          canvas.drawRect(mDrawRect, paint);
+        }
+      }
       return;
     }
 
-    final float tiltTan = (float) Math.tan(Math.toRadians(mShimmer.tilt));
-    final float translateHeight = mDrawRect.height() + tiltTan * mDrawRect.width();
-    final float translateWidth = mDrawRect.width() + tiltTan * mDrawRect.height();
-    final float dx;
-    final float dy;
-    final float animatedValue;
+    if (mShimmerPaint.getShader() == null) {
+      return;
+    }
 
-    if (mStaticAnimationProgress < 0f) {
-      animatedValue = mValueAnimator != null ? (float) mValueAnimator.getAnimatedValue() : 0f;
-    } else {
-      animatedValue = mStaticAnimationProgress;
-    }
-
-    switch (mShimmer.direction) {
-      default:
-      case Shimmer.Direction.LEFT_TO_RIGHT:
-        dx = offset(-translateWidth, translateWidth, animatedValue);
-        dy = 0;
-        break;
-      case Shimmer.Direction.RIGHT_TO_LEFT:
-        dx = offset(translateWidth, -translateWidth, animatedValue);
-        dy = 0f;
-        break;
-      case Shimmer.Direction.TOP_TO_BOTTOM:
-        dx = 0f;
-        dy = offset(-translateHeight, translateHeight, animatedValue);
-        break;
-      case Shimmer.Direction.BOTTOM_TO_TOP:
-        dx = 0f;
-        dy = offset(translateHeight, -translateHeight, animatedValue);
-        break;
-    }
-
-    mShaderMatrix.reset();
-    mShaderMatrix.setRotate(mShimmer.tilt, mDrawRect.width() / 2f, mDrawRect.height() / 2f);
-    mShaderMatrix.preTranslate(dx, dy);
-    mShimmerPaint.getShader().setLocalMatrix(mShaderMatrix);
-    canvas.drawRect(mDrawRect, mShimmerPaint);
+    updateShaderMatrix();
+    if (mMaskGradient != null && mMaskPaint.getShader() != null) {
+      // The mask stays in place, only the drawable's own gradient moves
+      mMaskGradient.setLocalMatrix(mShaderMatrix);
+      canvas.drawRect(mDrawRect, mMaskPaint);
+      return;
+    }
+    // The shader may be shared with other drawables, so it is positioned through the canvas
+    // rather than by giving it a local matrix
+    final int saveCount = canvas.save();
+    canvas.clipRect(mDrawRect);
+    canvas.concat(mShaderMatrix);
+    canvas.drawPaint(mShimmerPaint);
+    canvas.restoreToCount(saveCount);
+  }
+
+  private float getAnimatedValue() {
+    if (mStaticAnimationProgress >= 0f) {
+      return mStaticAnimationProgress;
+    }
+    if ((mHoldReasons & HOLD_MOTION) != 0) {
+      return mMotionStaticProgress;
+    }
+    if (mClock != null) {
+      return mClockAnimatedValue;
+    }
+    return mValueAnimator != null ? (float) mValueAnimator.getAnimatedValue() : 0f;
+  }
+
+  /**
+   * Pauses a started shimmer while the drawable is hidden, and resumes it once it is shown again,
+   * from the start if {@code restart} is set, as AnimatedVectorDrawable does. Views call this for
+   * their background, foreground and image drawables as their own visibility changes.
+   */
+  @Override
+  public boolean setVisible(boolean visible, boolean restart) {
+    final boolean changed = super.setVisible(visible, restart);
+    if (!visible) {
+      if (changed && isShimmerPending()) {
+        if (isShimmerStarted()) {
+          pauseShimmer();
+        } else {
+          stopShimmer();
+        }
+        mStartWhenVisible = true;
+      }
+    } else if (mStartWhenVisible) {
+      mStartWhenVisible = false;
+      if (restart) {
+        stopShimmer();
+      }
+      startShimmer();
+    } else if (restart && isShimmerStarted()) {
+      stopShimmer();
+      startShimmer();
+    }
+    return changed;
   }
 
   @Override
@@ -166,13 +506,154 @@ public final class ShimmerDrawable extends Drawable {
 
   @Override
   public int getOpacity() {
+    if (mDirectMode) {
+      return PixelFormat.TRANSLUCENT;
+    }
     return mShimmer != null && (mShimmer.clipToChildren || mShimmer.alphaShimmer)
         ? PixelFormat.TRANSLUCENT
         : PixelFormat.OPAQUE;
   }
 
-  private float offset(float start, float end, float percent) {
-    return start + (end - start) * percent;
+  @Override
+  public @NonNull ConstantState getConstantState() {
+    mState.mChangingConfigurations = getChangingConfigurations();
+    return mState;
+  }
+
+  /**
+   * Makes this drawable's configuration independent of the other drawables created from the same
+   * {@link ConstantState}. The Shimmer itself is still shared, it is never modified through a
+   * drawable.
+   */
+  @Override
+  public @NonNull Drawable mutate() {
+    if (!mMutated && super.mutate() == this) {
+      mState = new ShimmerState(mState);
+      mMutated = true;
+    }
+    return this;
+  }
+
+  /**
+   * Reads the Shimmer from a drawable resource. Inflating a drawable from its class name is only
+   * supported from Nougat onwards.
+   */
+  @Override
+  @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+  public void inflate(
+      @NonNull Resources r,
+      @NonNull XmlPullParser parser,
+      @NonNull AttributeSet attrs,
+      @Nullable Resources.Theme theme)
+      throws XmlPullParserException, IOException {
+    super.inflate(r, parser, attrs, theme);
+    final TypedArray a =
+        theme != null
+            ? theme.obtainStyledAttributes(attrs, R.styleable.ShimmerFrameLayout, 0, 0)
+            : r.obtainAttributes(attrs, R.styleable.ShimmerFrameLayout);
+    try {
+      mState.mChangingConfigurations |= a.getChangingConfigurations();
+      if (a.hasValue(R.styleable.ShimmerFrameLayout_shimmer_direct_color)) {
+        setDirectColor(
+            a.getColor(R.styleable.ShimmerFrameLayout_shimmer_direct_color, mDirectColor));
+        setDirectMode(true);
+      }
+      setShimmer(Shimmer.fromAttributes(a));
+    } finally {
+      a.recycle();
+    }
+  }
+
+  /**
+   * Once the highlight has moved entirely outside of the bounds, which for the default linear
+   * highlight happens by the start of the repeat delay, only the first frame needs to be drawn, the
+   * rest would be identical. Frames closer together than the Shimmer's max frame rate allows are
+   * skipped as well.
+   */
+  private void invalidateForAnimatedValue(float animatedValue, long frameTimeMillis) {
+    final boolean offscreen = isHighlightClear(animatedValue);
+    if (offscreen && mHighlightOffscreen) {
+      return;
+    }
+    // Moving the highlight out is always drawn, so that it never lingers through the delay
+    final float maxFrameRate = getMaxFrameRate();
+    if (!offscreen
+        && maxFrameRate > 0f
+        && frameTimeMillis - mLastFrameMillis < FRAME_INTERVAL_TOLERANCE * 1000f / maxFrameRate) {
+      return;
+    }
+    mHighlightOffscreen = offscreen;
+    mLastFrameMillis = frameTimeMillis;
+    invalidateSelf();
+  }
+
+  /**
+   * Return the value the animator would produce at the given play time, ignoring the start delay
+   * and the repeat count.
+   */
+  private float animatedValueAt(long playTimeMillis) {
+    final long cycleDuration = mShimmer.animationDuration + mShimmer.repeatDelay;
+    if (cycleDuration <= 0) {
+      return 0f;
+    }
+    // Phase offsets can put the play time before the epoch, so round towards negative infinity
+    long cycle = playTimeMillis / cycleDuration;
+    long cycleTime = playTimeMillis % cycleDuration;
+    if (cycleTime < 0) {
+      cycle--;
+      cycleTime += cycleDuration;
+    }
+    float fraction = (float) cycleTime / cycleDuration;
+    if (mShimmer.repeatMode == ValueAnimator.REVERSE && (cycle & 1) == 1) {
+      fraction = 1f - fraction;
+    }
+    return fraction * mShimmer.maxAnimatedValue();
+  }
+
+  private boolean isHighlightClear(float animatedValue) {
+    return mFramePlan != null && mFramePlan.isHighlightClear(animatedValue);
+  }
+
+  private void startClock() {
+    mClockStarted = true;
+    mClockStartMillis = mClock.getFrameTimeMillis();
+    mPausedMillis = 0L;
+    mClockAnimatedValue = 0f;
+    mClock.addListener(mClockListener);
+  }
+
+  private void onClockFrame(long frameTimeMillis) {
+    // The clock dispatches to a snapshot of its listeners, which may have stopped this drawable
+    if (!mClockStarted || mShimmer == null || mClock == null) {
+      return;
+    }
+    if (getCallback() == null) {
+      // Nothing draws this drawable any more, for example an ImageView that dropped it
+      stopShimmer();
+      return;
+    }
+    final long playTime = frameTimeMillis - mClockStartMillis - mPausedMillis - mShimmer.startDelay;
+    if (playTime < 0) {
+      return;
+    }
+    final long cycleDuration = mShimmer.animationDuration + mShimmer.repeatDelay;
+    if (mShimmer.repeatCount != ValueAnimator.INFINITE
+        && playTime >= cycleDuration * (mShimmer.repeatCount + 1)) {
+      // Settle on the value a finished animator would leave behind
+      mClockAnimatedValue =
+          mShimmer.repeatMode == ValueAnimator.REVERSE && mShimmer.repeatCount % 2 == 1
+              ? 0f
+              : mShimmer.maxAnimatedValue();
+      stopShimmer();
+      mHighlightOffscreen = isHighlightClear(mClockAnimatedValue);
+      invalidateSelf();
+      return;
+    }
+    // Phase is relative to the clock's epoch so that every drawable on the clock lines up
+    mClockAnimatedValue =
+        animatedValueAt(
+            frameTimeMillis - mClock.getEpochMillis() - mPhaseOffsetMillis - mPausedMillis);
+    invalidateForAnimatedValue(mClockAnimatedValue, frameTimeMillis);
   }
 
   private void updateValueAnimator() {
@@ -180,6 +661,15 @@ public final class ShimmerDrawable extends Drawable {
       return;
     }
 
+    if (mClock != null) {
+      if (mValueAnimator != null) {
+        mValueAnimator.cancel();
+        mValueAnimator.removeAllUpdateListeners();
+        mValueAnimator = null;
+      }
+      return;
+    }
+
     final boolean started;
     if (mValueAnimator != null) {
       started = mValueAnimator.isStarted();
@@ -189,64 +679,424 @@ public final class ShimmerDrawable extends Drawable {
       started = false;
     }
 
-    mValueAnimator =
-        ValueAnimator.ofFloat(0f, 1f + (float) (mShimmer.repeatDelay / mShimmer.animationDuration));
-    mValueAnimator.setInterpolator(new LinearInterpolator());
-    mValueAnimator.setRepeatMode(mShimmer.repeatMode);
-    mValueAnimator.setStartDelay(mShimmer.startDelay);
-    mValueAnimator.setRepeatCount(mShimmer.repeatCount);
-    mValueAnimator.setDuration(mShimmer.animationDuration + mShimmer.repeatDelay);
+    mValueAnimator = createValueAnimator(mShimmer);
     mValueAnimator.addUpdateListener(mUpdateListener);
     if (started) {
       mValueAnimator.start();
     }
   }
 
+  /**
+   * Composes the gradient with a snapshot of the content it would otherwise be masked against, so
+   * that it can be drawn without an offscreen layer. An {@link Bitmap.Config#ALPHA_8} snapshot is
+   * enough for color shimmers, alpha shimmers need the content's colors. Pass null to go back to
+   * masking through the xfermode. Relies on {@link ComposeShader} picking up changes to its
+   * children's local matrices, which is only the case from Oreo onwards.
+   */
+  void setMaskBitmap(@Nullable Bitmap mask) {
+    mMaskShader =
+        mask != null ? new BitmapShader(mask, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP) : null;
+    updateMaskShader();
+  }
+
+  /**
+   * In direct mode the gradient is painted straight onto opaque shapes, in the direct color,
+   * instead of masking whatever was drawn before it. This needs neither an offscreen layer nor an
+   * xfermode, so a host does not have to be composited. Alpha shimmers modulate the direct
+   * color's alpha, color shimmers keep their own colors within the shapes.
+   *
+   * <p>The drawable itself fills the direct path, or its bounds if there is none. Custom views can
+   * also draw their own shapes with {@link #getDirectPaint()}.
+   */
+  public void setDirectMode(boolean directMode) {
+    if (mDirectMode == directMode) {
+      return;
+    }
+    mDirectMode = directMode;
+    mState.mDirectMode = directMode;
+    updateDirectShader();
+    invalidateSelf();
+  }
+
+  public boolean isDirectMode() {
+    return mDirectMode;
+  }
+
+  /** Sets the shape drawn in direct mode. Pass null to fill the bounds. */
+  public void setDirectPath(@Nullable Path path) {
+    mDirectPath = path;
+    invalidateSelf();
+  }
+
+  public @Nullable Path getDirectPath() {
+    return mDirectPath;
+  }
+
+  /** Sets the color of the shapes drawn in direct mode. */
+  public void setDirectColor(@ColorInt int color) {
+    if (mDirectColor == color) {
+      return;
+    }
+    mDirectColor = color;
+    mState.mDirectColor = color;
+    updateDirectShader();
+    invalidateSelf();
+  }
+
+  public @ColorInt int getDirectColor() {
+    return mDirectColor;
+  }
+
+  /**
+   * Return the paint that draws the shimmer in direct mode, with its shader positioned for the
+   * current frame, or null when not in direct mode or before the drawable has bounds. Call this
+   * from every {@code onDraw} rather than holding on to the positioned result, and draw with it in
+   * the drawable's coordinates. The drawable keeps invalidating its callback while animating.
+   */
+  public @Nullable Paint getDirectPaint() {
+    final Shader shader = mDirectPaint.getShader();
+    if (!mDirectMode || shader == null || mFramePlan == null) {
+      return null;
+    }
+    updateShaderMatrix();
+    shader.setLocalMatrix(mShaderMatrix);
+    return mDirectPaint;
+  }
+
+  /**
+   * Tells the drawable where its bounds sit in the window, and how large the window is. Only used
+   * by {@link Shimmer.Builder#setWindowAligned(boolean) window aligned} Shimmers, whose host has to
+   * call this again whenever it moves within the window.
+   */
+  public void setWindowGeometry(int offsetX, int offsetY, int windowWidth, int windowHeight) {
+    final boolean sizeChanged = windowWidth != mWindowWidth || windowHeight != mWindowHeight;
+    if (!sizeChanged && offsetX == mWindowOffsetX && offsetY == mWindowOffsetY) {
+      return;
+    }
+    mWindowOffsetX = offsetX;
+    mWindowOffsetY = offsetY;
+    mWindowWidth = windowWidth;
+    mWindowHeight = windowHeight;
+    if (mShimmer == null || !mShimmer.windowAligned) {
+      return;
+    }
+    if (sizeChanged) {
+      updateShader();
+      updateMaskShader();
+      updateDirectShader();
+      updateFramePlan();
+    }
+    invalidateSelf();
+  }
+
+  private boolean isWindowAligned() {
+    return mShimmer != null && mShimmer.windowAligned && mWindowWidth > 0 && mWindowHeight > 0;
+  }
+
+  /** Return the width of the area the highlight sweeps across. */
+  private int getSweepWidth() {
+    return isWindowAligned() ? mWindowWidth : mDrawRect.width();
+  }
+
+  /** Return the height of the area the highlight sweeps across. */
+  private int getSweepHeight() {
+    return isWindowAligned() ? mWindowHeight : mDrawRect.height();
+  }
+
+  private void updateShaderMatrix() {
+    mFramePlan.apply(mShaderMatrix, getAnimatedValue());
+    if (isWindowAligned()) {
+      // Every drawable on the window draws a slice of the same sweep
+      mShaderMatrix.postTranslate(-mWindowOffsetX, -mWindowOffsetY);
+    }
+  }
+
+  private void updateDirectShader() {
+    final int sweepWidth = getSweepWidth();
+    final int sweepHeight = getSweepHeight();
+    if (!mDirectMode || mShimmer == null || sweepWidth == 0 || sweepHeight == 0) {
+      mDirectPaint.setShader(null);
+      return;
+    }
+    final int[] colors = new int[mShimmer.colors.length];
+    final int directAlpha = Color.alpha(mDirectColor);
+    for (int i = 0; i < colors.length; i++) {
+      final int color = mShimmer.colors[i];
+      final int rgb = (mShimmer.alphaShimmer ? mDirectColor : color) & 0x00FFFFFF;
+      colors[i] = (Color.alpha(color) * directAlpha / 255) << 24 | rgb;
+    }
+    // Not shared through the cache, since each frame moves it with a local matrix
+    mDirectPaint.setShader(
+        ShimmerShaderCache.createShader(
+            mShimmer,
+            colors,
+            mShimmer.width(sweepWidth),
+            mShimmer.height(sweepHeight)));
+  }
+
+  private void updateMaskShader() {
+    final int sweepWidth = getSweepWidth();
+    final int sweepHeight = getSweepHeight();
+    if (mMaskShader == null || mShimmer == null || sweepWidth == 0 || sweepHeight == 0) {
+      mMaskGradient = null;
+      mMaskPaint.setShader(null);
+      return;
+    }
+    // Not shared through the cache, since each frame moves it with a local matrix. Moving the
+    // gradient rather than the mask leaves the mask's shader untouched from frame to frame.
+    mMaskGradient =
+        ShimmerShaderCache.createShader(
+            mShimmer, mShimmer.colors, mShimmer.width(sweepWidth), mShimmer.height(sweepHeight));
+    mMaskPaint.setShader(
+        new ComposeShader(
+            mMaskShader,
+            mMaskGradient,
+            mShimmer.alphaShimmer ? PorterDuff.Mode.DST_IN : PorterDuff.Mode.SRC_IN));
+  }
+
+  /**
+   * Creates the animator for the given Shimmer. It runs from 0 to {@link
+   * Shimmer#maxAnimatedValue()}, where values above 1 make up the repeat delay.
+   */
+  private static ValueAnimator createValueAnimator(Shimmer shimmer) {
+    final ValueAnimator animator = ValueAnimator.ofFloat(0f, shimmer.maxAnimatedValue());
+    animator.setInterpolator(new LinearInterpolator());
+    animator.setRepeatMode(shimmer.repeatMode);
+    animator.setStartDelay(shimmer.startDelay);
+    animator.setRepeatCount(shimmer.repeatCount);
+    animator.setDuration(shimmer.animationDuration + shimmer.repeatDelay);
+    return animator;
+  }
+
   void maybeStartShimmer() {
-    if (mValueAnimator != null
-        && !mValueAnimator.isStarted()
-        && mShimmer != null
-        && mShimmer.autoStart
-        && getCallback() != null) {
+    if (mPaused || mShimmer == null || !mShimmer.autoStart || getCallback() == null) {
+      return;
+    }
+    if (!isVisible()) {
+      mStartWhenVisible = true;
+      return;
+    }
+    updateHoldsBeforeStart();
+    if (mHoldReasons != 0) {
+      mStartAfterHold = true;
+      updatePolicyListeners();
+      return;
+    }
+    if (mClock != null) {
+      if (!mClockStarted) {
+        startClock();
+      }
+    } else if (mValueAnimator != null && !mValueAnimator.isStarted()) {
       mValueAnimator.start();
     }
+    updatePolicyListeners();
+  }
+
+  /**
+   * Adapts this drawable to the tier of the given {@link ShimmerQualityController}, such as {@link
+   * ShimmerQualityController#getInstance}, while the shimmer is started. Pass null to always draw
+   * at full quality.
+   */
+  public void setQualityController(@Nullable ShimmerQualityController controller) {
+    if (controller == mQualityController) {
+      return;
+    }
+    if (mQualityController != null && mQualityListenerAdded) {
+      mQualityController.removeListener(mQualityListener);
+      mQualityListenerAdded = false;
+    }
+    mQualityController = controller;
+    if (controller == null) {
+      applyQualityTier(ShimmerQualityController.Tier.FULL);
+    }
+    updatePolicyListeners();
+  }
+
+  public @Nullable ShimmerQualityController getQualityController() {
+    return mQualityController;
+  }
+
+  /** Return the quality tier this drawable currently draws at. */
+  public @ShimmerQualityController.Tier int getQualityTier() {
+    return mQualityTier;
+  }
+
+  /**
+   * Holds the shimmer on a static frame while the given {@link ShimmerMotionPolicy} reduces motion.
+   * No animator runs and nothing is invalidated while held. Pass null to always animate.
+   */
+  public void setMotionPolicy(@Nullable ShimmerMotionPolicy policy) {
+    if (policy == mMotionPolicy) {
+      return;
+    }
+    if (mMotionPolicy != null && mMotionListenerAdded) {
+      mMotionPolicy.removeListener(mMotionListener);
+      mMotionListenerAdded = false;
+    }
+    mMotionPolicy = policy;
+    if (policy == null) {
+      setHeld(HOLD_MOTION, false);
+    }
+    updatePolicyListeners();
+  }
+
+  public @Nullable ShimmerMotionPolicy getMotionPolicy() {
+    return mMotionPolicy;
+  }
+
+  /**
+   * Applies the policies that are not listened to yet, before an animation starts, so that a
+   * shimmer they hold never starts running. Once started, their listeners keep the holds current.
+   */
+  private void updateHoldsBeforeStart() {
+    if (mMotionPolicy != null && !mMotionListenerAdded) {
+      applyMotionPolicy(mMotionPolicy);
+    }
+    if (mQualityController != null && !mQualityListenerAdded) {
+      applyQualityTier(mQualityController.getTier());
+    }
+  }
+
+  /** Only listens to the policies while there is an animation for them to adapt. */
+  private void updatePolicyListeners() {
+    final boolean wantsListener = isShimmerStarted() || mStartAfterHold;
+    if (mQualityController != null) {
+      if (wantsListener && !mQualityListenerAdded) {
+        mQualityListenerAdded = true;
+        mQualityController.addListener(mQualityListener);
+        applyQualityTier(mQualityController.getTier());
+      } else if (!wantsListener && mQualityListenerAdded) {
+        mQualityListenerAdded = false;
+        mQualityController.removeListener(mQualityListener);
+      }
+    }
+    if (mMotionPolicy != null) {
+      if (wantsListener && !mMotionListenerAdded) {
+        mMotionListenerAdded = true;
+        mMotionPolicy.addListener(mMotionListener);
+        applyMotionPolicy(mMotionPolicy);
+      } else if (!wantsListener && mMotionListenerAdded) {
+        mMotionListenerAdded = false;
+        mMotionPolicy.removeListener(mMotionListener);
+      }
+    }
+  }
+
+  private void applyMotionPolicy(ShimmerMotionPolicy policy) {
+    final float staticProgress = policy.getStaticProgress();
+    if (Float.compare(staticProgress, mMotionStaticProgress) != 0) {
+      mMotionStaticProgress = staticProgress;
+      if ((mHoldReasons & HOLD_MOTION) != 0) {
+        invalidateSelf();
+      }
+    }
+    setHeld(HOLD_MOTION, policy.isMotionReduced());
+  }
+
+  private void applyQualityTier(@ShimmerQualityController.Tier int tier) {
+    if (tier == mQualityTier) {
+      return;
+    }
+    mQualityTier = tier;
+    final boolean antiAlias = tier < ShimmerQualityController.Tier.LOW;
+    mShimmerPaint.setAntiAlias(antiAlias);
+    mMaskPaint.setAntiAlias(antiAlias);
+    mDirectPaint.setAntiAlias(antiAlias);
+    setHeld(HOLD_QUALITY, tier >= ShimmerQualityController.Tier.STATIC);
+    invalidateSelf();
+  }
+
+  /**
+   * Holds the shimmer on its current frame for the given reason, keeping its phase, or lets it go
+   * again once no reason is left. A held shimmer does not count as started.
+   */
+  private void setHeld(int reason, boolean held) {
+    final int holdReasons = held ? mHoldReasons | reason : mHoldReasons & ~reason;
+    if (holdReasons == mHoldReasons) {
+      return;
+    }
+    final boolean wasHeld = mHoldReasons != 0;
+    if (!wasHeld && isShimmerStarted()) {
+      pauseShimmer();
+      mStartAfterHold = true;
+    }
+    mHoldReasons = holdReasons;
+    if (wasHeld && holdReasons == 0 && mStartAfterHold) {
+      mStartAfterHold = false;
+      startShimmer();
+    }
+    invalidateSelf();
+  }
+
+  /** Holds the shimmer, keeping its phase, while a list it belongs to is scrolling fast. */
+  void setScrollHeld(boolean held) {
+    setHeld(HOLD_SCROLL, held);
+  }
+
+  /** Return whether the shimmer is started, or will start once it is no longer held or hidden. */
+  boolean isShimmerPending() {
+    return isShimmerStarted() || mStartAfterHold || mStartWhenVisible;
+  }
+
+  private float getMaxFrameRate() {
+    final float maxFrameRate = mShimmer != null ? mShimmer.maxFrameRate : 0f;
+    if (mQualityTier >= ShimmerQualityController.Tier.REDUCED_FRAME_RATE
+        && (maxFrameRate <= 0f
+            || maxFrameRate > ShimmerQualityController.REDUCED_FRAME_RATE_FPS)) {
+      return ShimmerQualityController.REDUCED_FRAME_RATE_FPS;
+    }
+    return maxFrameRate;
   }
 
   private void updateShader() {
-    final Rect bounds = getBounds();
-    final int boundsWidth = bounds.width();
-    final int boundsHeight = bounds.height();
-    if (boundsWidth == 0 || boundsHeight == 0 || mShimmer == null) {
-      return;
-    }
-    final int width = mShimmer.width(boundsWidth);
-    final int height = mShimmer.height(boundsHeight);
-
-    final Shader shader;
-    switch (mShimmer.shape) {
-      default:
-      case Shimmer.Shape.LINEAR:
-        boolean vertical =
-            mShimmer.direction == Shimmer.Direction.TOP_TO_BOTTOM
-                || mShimmer.direction == Shimmer.Direction.BOTTOM_TO_TOP;
-        int endX = vertical ? 0 : width;
-        int endY = vertical ? height : 0;
-        shader =
-            new LinearGradient(
-                0, 0, endX, endY, mShimmer.colors, mShimmer.positions, Shader.TileMode.CLAMP);
-        break;
-      case Shimmer.Shape.RADIAL:
-        shader =
-            new RadialGradient(
-                width / 2f,
-                height / 2f,
-                (float) (Math.max(width, height) / Math.sqrt(2)),
-                mShimmer.colors,
-                mShimmer.positions,
-                Shader.TileMode.CLAMP);
-        break;
-    }
-
-    mShimmerPaint.setShader(shader);
+    final int sweepWidth = getSweepWidth();
+    final int sweepHeight = getSweepHeight();
+    if (sweepWidth == 0 || sweepHeight == 0 || mShimmer == null) {
+      return;
+    }
+    final int width = mShimmer.width(sweepWidth);
+    final int height = mShimmer.height(sweepHeight);
+
+    mShimmerPaint.setShader(ShimmerShaderCache.obtain(mShimmer, width, height));
+  }
+
+  private void updateFramePlan() {
+    if (mShimmer == null || mDrawRect.width() == 0 || mDrawRect.height() == 0) {
+      mFramePlan = null;
+      return;
+    }
+    mFramePlan = new ShimmerFramePlan(mShimmer, getSweepWidth(), getSweepHeight());
+  }
+
+  /**
+   * The configuration shared between drawables created from the same resource. Gradients in the
+   * masking mode are already shared through {@link ShimmerShaderCache}. The clock and the phase
+   * offset belong to a single drawable, such as one row of a list or one member of a group, so
+   * they are left out and not handed to the drawables created from the state.
+   */
+  static final class ShimmerState extends ConstantState {
+    @Nullable Shimmer mShimmer;
+    boolean mDirectMode;
+    @ColorInt int mDirectColor = Color.LTGRAY;
+    int mChangingConfigurations;
+
+    ShimmerState() {}
+
+    ShimmerState(ShimmerState other) {
+      mShimmer = other.mShimmer;
+      mDirectMode = other.mDirectMode;
+      mDirectColor = other.mDirectColor;
+      mChangingConfigurations = other.mChangingConfigurations;
+    }
+
+    @Override
+    public @NonNull Drawable newDrawable() {
+      return new ShimmerDrawable(this);
+    }
+
+    @Override
+    public int getChangingConfigurations() {
+      return mChangingConfigurations;
+    }
   }
 }
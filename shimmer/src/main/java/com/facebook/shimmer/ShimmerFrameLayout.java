@@ -11,8 +11,10 @@ package com.facebook.shimmer;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Picture;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.AttributeSet;
@@ -31,9 +33,25 @@ import androidx.annotation.Nullable;
 public class ShimmerFrameLayout extends FrameLayout {
   private final Paint mContentPaint = new Paint();
   private final ShimmerDrawable mShimmerDrawable = new ShimmerDrawable();
+  private final ShimmerVisibilityTracker mVisibilityTracker =
+      new ShimmerVisibilityTracker(
+          this,
+          mShimmerDrawable,
+          new ShimmerVisibilityTracker.Callback() {
+            @Override
+            public void onShimmerStateChanged() {
+              updateShimmerState();
+            }
+          });
+
+  private @Nullable Bitmap mContentMask;
+  private @Nullable Canvas mContentMaskCanvas;
+  private @Nullable Picture mContentMaskPicture;
 
   private boolean mShowShimmer = true;
-  private boolean mStoppedShimmerBecauseVisibility = false;
+  private boolean mFrozenContent = false;
+  private boolean mContentMaskDirty = true;
+  private boolean mContentMaskUnsupported = false;
 
   public ShimmerFrameLayout(Context context) {
     super(context);
@@ -60,6 +78,7 @@ public class ShimmerFrameLayout extends FrameLayout {
   private void init(Context context, @Nullable AttributeSet attrs) {
     setWillNotDraw(false);
     mShimmerDrawable.setCallback(this);
+    mShimmerDrawable.setMotionPolicy(ShimmerMotionPolicy.getInstance(context));
 
     if (attrs == null) {
       setShimmer(new Shimmer.AlphaHighlightBuilder().build());
@@ -68,12 +87,7 @@ public class ShimmerFrameLayout extends FrameLayout {
 
     TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.ShimmerFrameLayout, 0, 0);
     try {
-      Shimmer.Builder shimmerBuilder =
-          a.hasValue(R.styleable.ShimmerFrameLayout_shimmer_colored)
-                  && a.getBoolean(R.styleable.ShimmerFrameLayout_shimmer_colored, false)
-              ? new Shimmer.ColorHighlightBuilder()
-              : new Shimmer.AlphaHighlightBuilder();
-      setShimmer(shimmerBuilder.consumeAttributes(a).build());
+      setShimmer(Shimmer.fromAttributes(a));
     } finally {
       a.recycle();
     }
@@ -81,12 +95,8 @@ public class ShimmerFrameLayout extends FrameLayout {
 
   public ShimmerFrameLayout setShimmer(@Nullable Shimmer shimmer) {
     mShimmerDrawable.setShimmer(shimmer);
-    if (shimmer != null && shimmer.clipToChildren) {
-      setLayerType(LAYER_TYPE_HARDWARE, mContentPaint);
-    } else {
-      setLayerType(LAYER_TYPE_NONE, null);
-    }
-
+    updateContentMode();
+    mVisibilityTracker.updateWindowGeometry();
     return this;
   }
 
@@ -94,17 +104,103 @@ public class ShimmerFrameLayout extends FrameLayout {
     return mShimmerDrawable.getShimmer();
   }
 
+  /**
+   * Drives the shimmer from the given {@link ShimmerClock}, such as {@link
+   * ShimmerClock#getInstance()}, instead of a dedicated animator. Pass null to go back to the
+   * default behavior.
+   */
+  public ShimmerFrameLayout setShimmerClock(@Nullable ShimmerClock clock) {
+    mShimmerDrawable.setShimmerClock(clock);
+    return this;
+  }
+
+  public @Nullable ShimmerClock getShimmerClock() {
+    return mShimmerDrawable.getShimmerClock();
+  }
+
+  /** See {@link ShimmerDrawable#setPhaseOffset(long)}. */
+  public ShimmerFrameLayout setPhaseOffset(long offsetMillis) {
+    mShimmerDrawable.setPhaseOffset(offsetMillis);
+    return this;
+  }
+
+  public long getPhaseOffset() {
+    return mShimmerDrawable.getPhaseOffset();
+  }
+
+  /**
+   * Holds the shimmer on a static frame while the given {@link ShimmerMotionPolicy} reduces motion,
+   * for example while animations are turned off or battery saver is on. Defaults to {@link
+   * ShimmerMotionPolicy#getInstance(Context)}. Pass null to always animate.
+   */
+  public ShimmerFrameLayout setMotionPolicy(@Nullable ShimmerMotionPolicy policy) {
+    mShimmerDrawable.setMotionPolicy(policy);
+    return this;
+  }
+
+  public @Nullable ShimmerMotionPolicy getMotionPolicy() {
+    return mShimmerDrawable.getMotionPolicy();
+  }
+
+  /**
+   * Adapts the shimmer to the tier of the given {@link ShimmerQualityController}, such as {@link
+   * ShimmerQualityController#getInstance(Context)}, dropping its frame rate, antialiasing and
+   * finally its animation and layer while frames are being missed. Pass null to always draw at full
+   * quality.
+   */
+  public ShimmerFrameLayout setQualityController(@Nullable ShimmerQualityController controller) {
+    mShimmerDrawable.setQualityController(controller);
+    return this;
+  }
+
+  public @Nullable ShimmerQualityController getQualityController() {
+    return mShimmerDrawable.getQualityController();
+  }
+
+  /**
+   * Sets whether the children are treated as static content. When enabled, and the shimmer clips
+   * to the children, the children are captured into a bitmap whenever they change, and each frame
+   * only draws the gradient composed with that snapshot instead of re-rendering the children into a
+   * hardware layer. Requires Oreo, on older versions this is a no-op. Before Pie, children drawing
+   * hardware bitmaps cannot be captured, and the layout falls back to the hardware layer until this
+   * is enabled again.
+   */
+  public ShimmerFrameLayout setFrozenContentEnabled(boolean enabled) {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O || enabled == mFrozenContent) {
+      return this;
+    }
+    mFrozenContent = enabled;
+    mContentMaskUnsupported = false;
+    updateContentMode();
+    return this;
+  }
+
+  public boolean isFrozenContentEnabled() {
+    return mFrozenContent;
+  }
+
+  /**
+   * Recaptures the children on the next frame when {@link #setFrozenContentEnabled(boolean)} is
+   * on. Changes that go through {@link View#invalidate()} are picked up automatically.
+   */
+  public void invalidateContentMask() {
+    mContentMaskDirty = true;
+    invalidate();
+  }
+
   /** Starts the shimmer animation. */
   public void startShimmer() {
     if (isAttachedToWindow()) {
       mShimmerDrawable.startShimmer();
+      updateShimmerState();
     }
   }
 
   /** Stops the shimmer animation. */
   public void stopShimmer() {
-    mStoppedShimmerBecauseVisibility = false;
+    mVisibilityTracker.onShimmerStopped();
     mShimmerDrawable.stopShimmer();
+    updateShimmerState();
   }
 
   /** Return whether the shimmer animation has been started. */
@@ -122,6 +218,7 @@ public class ShimmerFrameLayout extends FrameLayout {
     if (startShimmer) {
       startShimmer();
     }
+    updateShimmerState();
     invalidate();
   }
 
@@ -129,6 +226,7 @@ public class ShimmerFrameLayout extends FrameLayout {
   public void hideShimmer() {
     stopShimmer();
     mShowShimmer = false;
+    updateShimmerState();
     invalidate();
   }
 
@@ -141,12 +239,69 @@ public class ShimmerFrameLayout extends FrameLayout {
     return mShimmerDrawable.isShimmerRunning();
   }
 
+  /**
+   * Sets whether the shimmer pauses while this layout is scrolled entirely out of the window, for
+   * example inside a ScrollView. It resumes where it left off once any part of the layout is
+   * visible again. Enabled by default.
+   */
+  public ShimmerFrameLayout setPauseWhenClipped(boolean pauseWhenClipped) {
+    mVisibilityTracker.setPauseWhenClipped(pauseWhenClipped);
+    return this;
+  }
+
+  public boolean isPauseWhenClipped() {
+    return mVisibilityTracker.isPauseWhenClipped();
+  }
+
+  /**
+   * Sets whether the shimmer also stops while the window has lost focus, for example to another
+   * app in multi-window mode. It always stops while the window is hidden. Disabled by default.
+   */
+  public ShimmerFrameLayout setPauseOnWindowFocusLoss(boolean pauseOnWindowFocusLoss) {
+    mVisibilityTracker.setPauseOnWindowFocusLoss(pauseOnWindowFocusLoss);
+    return this;
+  }
+
+  public boolean isPauseOnWindowFocusLoss() {
+    return mVisibilityTracker.isPauseOnWindowFocusLoss();
+  }
+
+  /**
+   * Return whether this layout currently holds a hardware layer for the shimmer. The layer is only
+   * kept while the shimmer clips to the children and is both visible and running, static frames
+   * are composited through a temporary layer instead.
+   */
+  public boolean isHardwareLayerActive() {
+    return getLayerType() == LAYER_TYPE_HARDWARE;
+  }
+
   @Override
   public void onLayout(boolean changed, int left, int top, int right, int bottom) {
     super.onLayout(changed, left, top, right, bottom);
-    final int width = getWidth();
-    final int height = getHeight();
-    mShimmerDrawable.setBounds(0, 0, width, height);
+    mShimmerDrawable.setBounds(0, 0, getWidth(), getHeight());
+    if (changed) {
+      mContentMaskDirty = true;
+    }
+    // Setting the bounds may have auto-started the shimmer
+    updateShimmerState();
+  }
+
+  @Override
+  public void onViewAdded(View child) {
+    super.onViewAdded(child);
+    mContentMaskDirty = true;
+  }
+
+  @Override
+  public void onViewRemoved(View child) {
+    super.onViewRemoved(child);
+    mContentMaskDirty = true;
+  }
+
+  @Override
+  public void onDescendantInvalidated(@NonNull View child, @NonNull View target) {
+    super.onDescendantInvalidated(child, target);
+    mContentMaskDirty = true;
   }
 
   @Override
@@ -154,46 +309,101 @@ public class ShimmerFrameLayout extends FrameLayout {
     super.onVisibilityChanged(changedView, visibility);
     // View's constructor directly invokes this method, in which case no fields on
     // this class have been fully initialized yet.
-    if (mShimmerDrawable == null) {
+    if (mVisibilityTracker == null) {
       return;
     }
-    if (visibility != View.VISIBLE) {
-      // GONE or INVISIBLE
-      if (isShimmerStarted()) {
-        stopShimmer();
-        mStoppedShimmerBecauseVisibility = true;
-      }
-    } else if (mStoppedShimmerBecauseVisibility) {
-      mShimmerDrawable.maybeStartShimmer();
-      mStoppedShimmerBecauseVisibility = false;
-    }
+    mVisibilityTracker.update();
+    updateShimmerState();
+  }
+
+  @Override
+  protected void onWindowVisibilityChanged(int visibility) {
+    super.onWindowVisibilityChanged(visibility);
+    // Covered by another activity, or the app went to the background
+    mVisibilityTracker.update();
+    updateShimmerState();
+  }
+
+  @Override
+  public void onWindowFocusChanged(boolean hasWindowFocus) {
+    super.onWindowFocusChanged(hasWindowFocus);
+    mVisibilityTracker.update();
   }
 
   @Override
   public void onAttachedToWindow() {
     super.onAttachedToWindow();
     mShimmerDrawable.maybeStartShimmer();
+    mVisibilityTracker.setTracking(true);
+    updateShimmerState();
   }
 
   @Override
   public void onDetachedFromWindow() {
     super.onDetachedFromWindow();
+    mVisibilityTracker.setTracking(false);
     stopShimmer();
+    releaseContentMask();
+    // Still reported as attached and visible at this point
+    setLayerType(LAYER_TYPE_NONE, null);
   }
 
   @Override
   public void dispatchDraw(Canvas canvas) {
-    super.dispatchDraw(canvas);
+    if (mShowShimmer && isContentMaskActive()) {
+      if (mContentMaskDirty || mContentMask == null) {
+        updateContentMask();
+      }
+      if (mContentMask != null) {
+        mShimmerDrawable.draw(canvas);
+        return;
+      }
+    }
     if (mShowShimmer) {
-      mShimmerDrawable.draw(canvas);
+      if (needsCompositing() && getLayerType() != LAYER_TYPE_HARDWARE) {
+        // Not animating, so a layer for this one frame is cheaper than keeping one around
+        final int saveCount = saveLayer(canvas);
+        super.dispatchDraw(canvas);
+        mShimmerDrawable.draw(canvas);
+        canvas.restoreToCount(saveCount);
+      } else {
+        super.dispatchDraw(canvas);
+        mShimmerDrawable.draw(canvas);
+      }
+    } else {
+      super.dispatchDraw(canvas);
     }
   }
 
+  @SuppressWarnings("deprecation")
+  private int saveLayer(Canvas canvas) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+      return canvas.saveLayer(0, 0, getWidth(), getHeight(), null);
+    }
+    return canvas.saveLayer(0, 0, getWidth(), getHeight(), null, Canvas.ALL_SAVE_FLAG);
+  }
+
+  ShimmerDrawable getShimmerDrawable() {
+    return mShimmerDrawable;
+  }
+
   @Override
   protected boolean verifyDrawable(@NonNull Drawable who) {
     return super.verifyDrawable(who) || who == mShimmerDrawable;
   }
 
+  @Override
+  public void invalidateDrawable(@NonNull Drawable drawable) {
+    super.invalidateDrawable(drawable);
+    // The quality controller may hold or release the shimmer without going through this layout
+    if (drawable == mShimmerDrawable) {
+      final boolean hasLayer = getLayerType() == LAYER_TYPE_HARDWARE;
+      if (hasLayer != mShimmerDrawable.isShimmerStarted() && (hasLayer || needsCompositing())) {
+        updateShimmerState();
+      }
+    }
+  }
+
   public void setStaticAnimationProgress(float value) {
     mShimmerDrawable.setStaticAnimationProgress(value);
   }
@@ -201,4 +411,160 @@ public class ShimmerFrameLayout extends FrameLayout {
   public void clearStaticAnimationProgress() {
     mShimmerDrawable.clearStaticAnimationProgress();
   }
+
+  private boolean isContentMaskActive() {
+    final Shimmer shimmer = getShimmer();
+    return mFrozenContent
+        && !mContentMaskUnsupported
+        && shimmer != null
+        && shimmer.clipToChildren;
+  }
+
+  private void updateContentMode() {
+    if (isContentMaskActive()) {
+      // The snapshot's format depends on the Shimmer
+      mContentMaskDirty = true;
+    } else {
+      releaseContentMask();
+    }
+    updateShimmerState();
+    invalidate();
+  }
+
+  /** Return whether the shimmer has to be composited with the children in a layer. */
+  private boolean needsCompositing() {
+    final Shimmer shimmer = getShimmer();
+    return shimmer != null && shimmer.clipToChildren && mShowShimmer && !isContentMaskActive();
+  }
+
+  /** Updates the layer and frame rate the layout requests while its shimmer runs and is shown. */
+  private void updateShimmerState() {
+    // View's constructor may invoke this through the visibility callbacks
+    if (mVisibilityTracker == null) {
+      return;
+    }
+    updateLayerType();
+    mVisibilityTracker.updateFrameRateHint();
+  }
+
+  private void updateLayerType() {
+    final boolean wantsLayer =
+        needsCompositing()
+            && isShimmerStarted()
+            && isShown()
+            && getWindowVisibility() == View.VISIBLE;
+    if (wantsLayer && getLayerType() != LAYER_TYPE_HARDWARE) {
+      setLayerType(LAYER_TYPE_HARDWARE, mContentPaint);
+    } else if (!wantsLayer && getLayerType() != LAYER_TYPE_NONE) {
+      setLayerType(LAYER_TYPE_NONE, null);
+    }
+  }
+
+  private void updateContentMask() {
+    final Shimmer shimmer = getShimmer();
+    final int width = getWidth();
+    final int height = getHeight();
+    if (shimmer == null || width == 0 || height == 0) {
+      releaseContentMask();
+      return;
+    }
+    // Color shimmers replace the children's colors, so only their coverage is needed
+    final Bitmap.Config config =
+        shimmer.alphaShimmer ? Bitmap.Config.ARGB_8888 : Bitmap.Config.ALPHA_8;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+      updateContentMaskFromPicture(width, height, config);
+      return;
+    }
+    final boolean reuse = canReuseContentMask(width, height, config);
+    if (!reuse) {
+      replaceContentMask(Bitmap.createBitmap(width, height, config));
+    } else {
+      mContentMask.eraseColor(0);
+    }
+    try {
+      super.dispatchDraw(mContentMaskCanvas);
+    } catch (IllegalArgumentException e) {
+      // A child drew a hardware bitmap, which a software canvas cannot read before Pie. Composite
+      // the children in a layer instead, which invalidateDrawable sets up on the next frame.
+      mContentMaskUnsupported = true;
+      releaseContentMask();
+      mContentMaskCanvas = null;
+      return;
+    }
+    mContentMaskDirty = false;
+    if (reuse) {
+      // Rebuild the mask shader over the redrawn pixels
+      mShimmerDrawable.setMaskBitmap(mContentMask);
+    }
+  }
+
+  /**
+   * Records the children and renders them into the current bitmap, or a new one. Children drawing
+   * hardware bitmaps can only be rendered into a hardware bitmap, which still works as the mask's
+   * shader but has to be created anew on every capture.
+   */
+  @TargetApi(Build.VERSION_CODES.P)
+  private void updateContentMaskFromPicture(int width, int height, Bitmap.Config config) {
+    if (mContentMaskPicture == null) {
+      mContentMaskPicture = new Picture();
+    }
+    super.dispatchDraw(mContentMaskPicture.beginRecording(width, height));
+    mContentMaskPicture.endRecording();
+    mContentMaskDirty = false;
+    if (mContentMaskPicture.requiresHardwareAcceleration()) {
+      replaceContentMask(
+          Bitmap.createBitmap(mContentMaskPicture, width, height, Bitmap.Config.HARDWARE));
+      return;
+    }
+    if (canReuseContentMask(width, height, config)) {
+      mContentMask.eraseColor(0);
+    } else {
+      replaceContentMask(Bitmap.createBitmap(width, height, config));
+    }
+    mContentMaskCanvas.drawPicture(mContentMaskPicture);
+    mShimmerDrawable.setMaskBitmap(mContentMask);
+  }
+
+  /** Return whether the current snapshot can be drawn over again for a new capture. */
+  private boolean canReuseContentMask(int width, int height, Bitmap.Config config) {
+    return mContentMask != null
+        && mContentMask.isMutable()
+        && mContentMask.getWidth() == width
+        && mContentMask.getHeight() == height
+        && mContentMask.getConfig() == config;
+  }
+
+  /**
+   * Hands the new snapshot to the drawable and recycles the previous one, which the drawable no
+   * longer references.
+   */
+  private void replaceContentMask(Bitmap mask) {
+    final Bitmap previous = mContentMask;
+    mContentMask = mask;
+    if (mask.isMutable()) {
+      if (mContentMaskCanvas == null) {
+        mContentMaskCanvas = new Canvas();
+      }
+      mContentMaskCanvas.setBitmap(mask);
+    } else if (mContentMaskCanvas != null) {
+      mContentMaskCanvas.setBitmap(null);
+    }
+    mShimmerDrawable.setMaskBitmap(mask);
+    if (previous != null) {
+      previous.recycle();
+    }
+  }
+
+  private void releaseContentMask() {
+    if (mContentMask == null) {
+      return;
+    }
+    mShimmerDrawable.setMaskBitmap(null);
+    if (mContentMaskCanvas != null) {
+      mContentMaskCanvas.setBitmap(null);
+    }
+    mContentMask.recycle();
+    mContentMask = null;
+    mContentMaskDirty = true;
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.graphics.Matrix;
+
+/**
+ * The per-frame geometry of a {@link Shimmer} laid out in a given size, computed once whenever the
+ * configuration or the bounds change. Producing the matrix for a frame then only takes a lerp
+ * between the start and end translations.
+ */
+final class ShimmerFramePlan {
+  private final Matrix mBaseMatrix = new Matrix();
+  private final float mStartX;
+  private final float mStartY;
+  private final float mEndX;
+  private final float mEndY;
+  private final float mClearValue;
+
+  ShimmerFramePlan(Shimmer shimmer, int width, int height) {
+    final float tiltTan = (float) Math.tan(Math.toRadians(shimmer.tilt));
+    final float translateHeight = height + tiltTan * width;
+    final float translateWidth = width + tiltTan * height;
+
+    switch (shimmer.direction) {
+      default:
+      case Shimmer.Direction.LEFT_TO_RIGHT:
+        mStartX = -translateWidth;
+        mEndX = translateWidth;
+        mStartY = 0f;
+        mEndY = 0f;
+        break;
+      case Shimmer.Direction.RIGHT_TO_LEFT:
+        mStartX = translateWidth;
+        mEndX = -translateWidth;
+        mStartY = 0f;
+        mEndY = 0f;
+        break;
+      case Shimmer.Direction.TOP_TO_BOTTOM:
+        mStartX = 0f;
+        mEndX = 0f;
+        mStartY = -translateHeight;
+        mEndY = translateHeight;
+        break;
+      case Shimmer.Direction.BOTTOM_TO_TOP:
+        mStartX = 0f;
+        mEndX = 0f;
+        mStartY = translateHeight;
+        mEndY = -translateHeight;
+        break;
+    }
+
+    mBaseMatrix.setRotate(shimmer.tilt, width / 2f, height / 2f);
+    mClearValue =
+        shimmer.shape == Shimmer.Shape.RADIAL
+            ? computeRadialClearValue(shimmer, width, height)
+            : computeLinearClearValue(shimmer, width, height);
+  }
+
+  /**
+   * Return the animated value from which the highlight has left the bounds for the rest of the
+   * cycle. Values past 1 keep moving the highlight, so a highlight larger than the bounds, such as
+   * a radial one, only clears them past 1. Infinite if the highlight never leaves.
+   */
+  float getClearValue() {
+    return mClearValue;
+  }
+
+  /** Return whether the highlight lies entirely outside of the bounds at the given value. */
+  boolean isHighlightClear(float animatedValue) {
+    return animatedValue >= mClearValue;
+  }
+
+  private float computeLinearClearValue(Shimmer shimmer, int width, int height) {
+    // The highlight is a band along the gradient's axis, infinite across it
+    final boolean vertical =
+        shimmer.direction == Shimmer.Direction.TOP_TO_BOTTOM
+            || shimmer.direction == Shimmer.Direction.BOTTOM_TO_TOP;
+    final int length = vertical ? shimmer.height(height) : shimmer.width(width);
+    final float bandStart = shimmer.positions[0] * length;
+    final float bandEnd = shimmer.positions[3] * length;
+
+    // Project the corners of the bounds onto the gradient's axis, undoing the tilt
+    final Matrix inverse = new Matrix();
+    mBaseMatrix.invert(inverse);
+    final float[] corners = {0f, 0f, width, 0f, 0f, height, width, height};
+    inverse.mapPoints(corners);
+    float min = Float.POSITIVE_INFINITY;
+    float max = Float.NEGATIVE_INFINITY;
+    for (int i = vertical ? 1 : 0; i < corners.length; i += 2) {
+      min = Math.min(min, corners[i]);
+      max = Math.max(max, corners[i]);
+    }
+
+    final float start = vertical ? mStartY : mStartX;
+    final float travel = vertical ? mEndY - mStartY : mEndX - mStartX;
+    if (travel > 0f) {
+      return (max - bandStart - start) / travel;
+    } else if (travel < 0f) {
+      return (min - bandEnd - start) / travel;
+    }
+    return Float.POSITIVE_INFINITY;
+  }
+
+  private float computeRadialClearValue(Shimmer shimmer, int width, int height) {
+    // The base color starts at the third stop, beyond it the ring no longer shows
+    final int gradientWidth = shimmer.width(width);
+    final int gradientHeight = shimmer.height(height);
+    final float radius =
+        (float) (Math.max(gradientWidth, gradientHeight) / Math.sqrt(2)) * shimmer.positions[2];
+    final float[] center = {gradientWidth / 2f + mStartX, gradientHeight / 2f + mStartY};
+    mBaseMatrix.mapPoints(center);
+    final float[] travel = new float[2];
+    getTravel(travel);
+    // Clear once the ring's bounding box has left the bounds along either axis
+    return Math.min(
+        axisClearValue(center[0], travel[0], radius, width),
+        axisClearValue(center[1], travel[1], radius, height));
+  }
+
+  private static float axisClearValue(float start, float travel, float radius, int size) {
+    if (travel > 0f) {
+      return (size + radius - start) / travel;
+    } else if (travel < 0f) {
+      return (-radius - start) / travel;
+    }
+    return Float.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Writes how far the highlight moves over one sweep, once rotated by the tilt, into {@code out}.
+   */
+  private void getTravel(float[] out) {
+    out[0] = mEndX - mStartX;
+    out[1] = mEndY - mStartY;
+    mBaseMatrix.mapVectors(out);
+  }
+
+  /** Writes the shader matrix for the given animated value into {@code out}. */
+  void apply(Matrix out, float animatedValue) {
+    out.set(mBaseMatrix);
+    out.preTranslate(
+        mStartX + (mEndX - mStartX) * animatedValue, mStartY + (mEndY - mStartY) * animatedValue);
+  }
+}
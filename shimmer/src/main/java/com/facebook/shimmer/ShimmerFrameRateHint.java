@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.os.Build;
+import android.view.View;
+import androidx.annotation.Nullable;
+import java.lang.reflect.Method;
+
+/**
+ * Publishes a Shimmer's max frame rate as the host view's requested frame rate, so that the
+ * display can run at a lower refresh rate while only the shimmer animates. Hosts only request it
+ * while their shimmer runs and is shown. The method only exists from Android 15 onwards, and is
+ * looked up reflectively.
+ */
+final class ShimmerFrameRateHint {
+  private static final int VANILLA_ICE_CREAM = 35;
+
+  private static boolean sLookedUp;
+  private static @Nullable Method sSetRequestedFrameRate;
+
+  private final View mView;
+  // NaN is the platform's default, leaving the choice to the system
+  private float mFrameRate = Float.NaN;
+
+  ShimmerFrameRateHint(View view) {
+    mView = view;
+  }
+
+  /** Requests the given Shimmer's max frame rate for the view, or clears the request for null. */
+  void update(@Nullable Shimmer shimmer) {
+    final float frameRate =
+        shimmer != null && shimmer.maxFrameRate > 0f ? shimmer.maxFrameRate : Float.NaN;
+    if (Float.compare(frameRate, mFrameRate) == 0) {
+      return;
+    }
+    mFrameRate = frameRate;
+    if (Build.VERSION.SDK_INT < VANILLA_ICE_CREAM) {
+      return;
+    }
+    final Method method = getMethod();
+    if (method == null) {
+      return;
+    }
+    try {
+      method.invoke(mView, frameRate);
+    } catch (Exception e) {
+      // Only a hint, the shimmer still caps its own invalidations
+    }
+  }
+
+  private static @Nullable Method getMethod() {
+    if (!sLookedUp) {
+      sLookedUp = true;
+      try {
+        sSetRequestedFrameRate = View.class.getMethod("setRequestedFrameRate", float.class);
+      } catch (NoSuchMethodException e) {
+        sSetRequestedFrameRate = null;
+      }
+    }
+    return sSetRequestedFrameRate;
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+
+/**
+ * Coordinates many shimmers on one screen. Every member is driven by the group's {@link
+ * ShimmerClock}, so all of them advance from a single frame callback and their invalidations land
+ * in the same traversal, and they can be started, stopped, shown and hidden in one call.
+ *
+ * <p>Members are held strongly, so remove them once they are done loading. All methods must be
+ * called from the main thread.
+ */
+@MainThread
+public final class ShimmerGroup {
+  private final ShimmerClock mClock;
+  private final ArrayList<ShimmerFrameLayout> mLayouts = new ArrayList<>();
+  private final ArrayList<ShimmerDrawable> mDrawables = new ArrayList<>();
+  // The clock each member had before joining, at the same index, restored when it leaves
+  private final ArrayList<ShimmerClock> mLayoutClocks = new ArrayList<>();
+  private final ArrayList<ShimmerClock> mDrawableClocks = new ArrayList<>();
+
+  /** Creates a group driven by the process-wide {@link ShimmerClock#getInstance()}. */
+  public ShimmerGroup() {
+    this(ShimmerClock.getInstance());
+  }
+
+  public ShimmerGroup(@NonNull ShimmerClock clock) {
+    mClock = clock;
+  }
+
+  public @NonNull ShimmerClock getClock() {
+    return mClock;
+  }
+
+  public ShimmerGroup add(@NonNull ShimmerFrameLayout layout) {
+    if (!mLayouts.contains(layout)) {
+      mLayouts.add(layout);
+      mLayoutClocks.add(layout.getShimmerClock());
+      layout.setShimmerClock(mClock);
+    }
+    return this;
+  }
+
+  public ShimmerGroup add(@NonNull ShimmerDrawable drawable) {
+    if (!mDrawables.contains(drawable)) {
+      mDrawables.add(drawable);
+      mDrawableClocks.add(drawable.getShimmerClock());
+      drawable.setShimmerClock(mClock);
+    }
+    return this;
+  }
+
+  /** Removes the layout from the group, handing it back to the clock it had before, if any. */
+  public ShimmerGroup remove(@NonNull ShimmerFrameLayout layout) {
+    final int index = mLayouts.indexOf(layout);
+    if (index >= 0) {
+      mLayouts.remove(index);
+      layout.setShimmerClock(mLayoutClocks.remove(index));
+    }
+    return this;
+  }
+
+  /** Removes the drawable from the group, handing it back to the clock it had before, if any. */
+  public ShimmerGroup remove(@NonNull ShimmerDrawable drawable) {
+    final int index = mDrawables.indexOf(drawable);
+    if (index >= 0) {
+      mDrawables.remove(index);
+      drawable.setShimmerClock(mDrawableClocks.remove(index));
+    }
+    return this;
+  }
+
+  /** Removes every member from the group. */
+  public void clear() {
+    for (int i = mLayouts.size() - 1; i >= 0; i--) {
+      remove(mLayouts.get(i));
+    }
+    for (int i = mDrawables.size() - 1; i >= 0; i--) {
+      remove(mDrawables.get(i));
+    }
+  }
+
+  /** Return the number of layouts and drawables in the group. */
+  public int size() {
+    return mLayouts.size() + mDrawables.size();
+  }
+
+  /** Starts every member's shimmer. */
+  public void startShimmer() {
+    for (int i = 0, size = mLayouts.size(); i < size; i++) {
+      mLayouts.get(i).startShimmer();
+    }
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      mDrawables.get(i).startShimmer();
+    }
+  }
+
+  /** Stops every member's shimmer. */
+  public void stopShimmer() {
+    for (int i = 0, size = mLayouts.size(); i < size; i++) {
+      mLayouts.get(i).stopShimmer();
+    }
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      mDrawables.get(i).stopShimmer();
+    }
+  }
+
+  /**
+   * Shows every member's shimmer.
+   *
+   * @param startShimmer Whether to start the shimmers again.
+   */
+  public void showShimmer(boolean startShimmer) {
+    for (int i = 0, size = mLayouts.size(); i < size; i++) {
+      mLayouts.get(i).showShimmer(startShimmer);
+    }
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      final ShimmerDrawable drawable = mDrawables.get(i);
+      if (drawable.setVisible(true, false)) {
+        drawable.invalidateSelf();
+      }
+      if (startShimmer) {
+        drawable.startShimmer();
+      }
+    }
+  }
+
+  /** Hides every member's shimmer, stopping them in the process. */
+  public void hideShimmer() {
+    for (int i = 0, size = mLayouts.size(); i < size; i++) {
+      mLayouts.get(i).hideShimmer();
+    }
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      final ShimmerDrawable drawable = mDrawables.get(i);
+      drawable.stopShimmer();
+      if (drawable.setVisible(false, false)) {
+        drawable.invalidateSelf();
+      }
+    }
+  }
+
+  /** Return the number of members whose shimmer has been started. */
+  public int getStartedCount() {
+    int count = 0;
+    for (int i = 0, size = mLayouts.size(); i < size; i++) {
+      if (mLayouts.get(i).isShimmerStarted()) {
+        count++;
+      }
+    }
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      if (mDrawables.get(i).isShimmerStarted()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Return the number of members currently animating, past their start delay. */
+  public int getRunningCount() {
+    int count = 0;
+    for (int i = 0, size = mLayouts.size(); i < size; i++) {
+      if (mLayouts.get(i).isShimmerRunning()) {
+        count++;
+      }
+    }
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      if (mDrawables.get(i).isShimmerRunning()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Return the number of members whose shimmer is shown. */
+  public int getVisibleCount() {
+    int count = 0;
+    for (int i = 0, size = mLayouts.size(); i < size; i++) {
+      if (mLayouts.get(i).isShimmerVisible()) {
+        count++;
+      }
+    }
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      if (mDrawables.get(i).isVisible()) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import java.util.Arrays;
+
+/**
+ * Shimmers the skeleton rows of a list, such as a RecyclerView or a LinearLayout, from a single
+ * {@link ShimmerDrawable} drawn in the list's overlay. The gradient is defined in the list's
+ * coordinates and drawn clipped to each skeleton row, so the rows can be plain views instead of
+ * one {@link ShimmerFrameLayout} each. When the Shimmer clips to the children, the list itself
+ * holds the only hardware layer, and only while the shimmer runs. The overlay draws after the rows
+ * and cannot wrap them in a layer of its own, so a stopped or held Shimmer that clips to the
+ * children leaves the rows plain until it runs again. Like the layout, the shimmer stops while the
+ * list is hidden and pauses while it is scrolled out of the window.
+ *
+ * <p>Requires Jellybean MR2 for {@link android.view.ViewGroupOverlay}.
+ */
+@RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public final class ShimmerListOverlay {
+  /** Decides which of the list's children are skeleton rows. */
+  public interface SkeletonMatcher {
+    boolean isSkeleton(@NonNull View child);
+  }
+
+  private final View.OnLayoutChangeListener mLayoutChangeListener =
+      new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(
+            View v,
+            int left,
+            int top,
+            int right,
+            int bottom,
+            int oldLeft,
+            int oldTop,
+            int oldRight,
+            int oldBottom) {
+          updateBounds(right - left, bottom - top);
+        }
+      };
+
+  private final View.OnAttachStateChangeListener mAttachStateChangeListener =
+      new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+          setPreDrawListenerAdded(true);
+          mShimmerDrawable.maybeStartShimmer();
+          mVisibilityTracker.setTracking(true);
+          updateLayerType(true);
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+          setPreDrawListenerAdded(false);
+          mVisibilityTracker.setTracking(false);
+          mShimmerDrawable.stopShimmer();
+          updateLayerType(false);
+        }
+      };
+
+  private final ViewTreeObserver.OnPreDrawListener mPreDrawListener =
+      new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+          // Scrolling and item animations move rows without the overlay being re-recorded
+          if (canDrawRows() && mOverlayDrawable.haveRowsMoved()) {
+            mOverlayDrawable.invalidateSelf();
+          }
+          return true;
+        }
+      };
+
+  private final ViewGroup mList;
+  private final ShimmerDrawable mShimmerDrawable = new ShimmerDrawable();
+  private final OverlayDrawable mOverlayDrawable = new OverlayDrawable();
+  private final ShimmerVisibilityTracker mVisibilityTracker;
+
+  private @Nullable SkeletonMatcher mSkeletonMatcher;
+  private boolean mAttached;
+  private boolean mOwnsLayer;
+  private boolean mPreDrawListenerAdded;
+
+  public ShimmerListOverlay(@NonNull ViewGroup list) {
+    mList = list;
+    mVisibilityTracker =
+        new ShimmerVisibilityTracker(
+            list,
+            mShimmerDrawable,
+            new ShimmerVisibilityTracker.Callback() {
+              @Override
+              public void onShimmerStateChanged() {
+                updateLayerType(isListAttached());
+              }
+            });
+    mShimmerDrawable.setCallback(mOverlayDrawable);
+    mShimmerDrawable.setShimmer(new Shimmer.AlphaHighlightBuilder().build());
+  }
+
+  public ShimmerListOverlay setShimmer(@Nullable Shimmer shimmer) {
+    mShimmerDrawable.setShimmer(shimmer);
+    updateLayerType(isListAttached());
+    mVisibilityTracker.update();
+    return this;
+  }
+
+  public @Nullable Shimmer getShimmer() {
+    return mShimmerDrawable.getShimmer();
+  }
+
+  /** See {@link ShimmerDrawable#setShimmerClock(ShimmerClock)}. */
+  public ShimmerListOverlay setShimmerClock(@Nullable ShimmerClock clock) {
+    mShimmerDrawable.setShimmerClock(clock);
+    return this;
+  }
+
+  /** Sets which children are shimmered. By default, every child is treated as a skeleton row. */
+  public ShimmerListOverlay setSkeletonMatcher(@Nullable SkeletonMatcher skeletonMatcher) {
+    mSkeletonMatcher = skeletonMatcher;
+    mOverlayDrawable.invalidateSelf();
+    return this;
+  }
+
+  /** Adds the shimmer to the list's overlay, starting it if the Shimmer auto-starts. */
+  public void attach() {
+    if (mAttached) {
+      return;
+    }
+    mAttached = true;
+    mList.addOnLayoutChangeListener(mLayoutChangeListener);
+    mList.addOnAttachStateChangeListener(mAttachStateChangeListener);
+    mList.getOverlay().add(mOverlayDrawable);
+    updateBounds(mList.getWidth(), mList.getHeight());
+    if (isListAttached()) {
+      setPreDrawListenerAdded(true);
+      mShimmerDrawable.maybeStartShimmer();
+      mVisibilityTracker.setTracking(true);
+    }
+    updateLayerType(isListAttached());
+  }
+
+  /** Stops the shimmer and removes it from the list. */
+  public void detach() {
+    if (!mAttached) {
+      return;
+    }
+    mAttached = false;
+    mVisibilityTracker.setTracking(false);
+    mShimmerDrawable.stopShimmer();
+    setPreDrawListenerAdded(false);
+    mList.removeOnLayoutChangeListener(mLayoutChangeListener);
+    mList.removeOnAttachStateChangeListener(mAttachStateChangeListener);
+    mList.getOverlay().remove(mOverlayDrawable);
+    updateLayerType(false);
+  }
+
+  public boolean isAttached() {
+    return mAttached;
+  }
+
+  /** Starts the shimmer animation. */
+  public void startShimmer() {
+    if (mAttached && isListAttached()) {
+      mShimmerDrawable.startShimmer();
+      updateLayerType(true);
+      mVisibilityTracker.updateFrameRateHint();
+    }
+  }
+
+  /** Stops the shimmer animation. */
+  public void stopShimmer() {
+    mVisibilityTracker.onShimmerStopped();
+    mShimmerDrawable.stopShimmer();
+    updateLayerType(isListAttached());
+  }
+
+  /** Return whether the shimmer animation has been started. */
+  public boolean isShimmerStarted() {
+    return mShimmerDrawable.isShimmerStarted();
+  }
+
+  /**
+   * Sets whether the shimmer pauses while the list is scrolled entirely out of the window, for
+   * example inside a ScrollView. It resumes where it left off once any part of the list is visible
+   * again. Enabled by default.
+   */
+  public ShimmerListOverlay setPauseWhenClipped(boolean pauseWhenClipped) {
+    mVisibilityTracker.setPauseWhenClipped(pauseWhenClipped);
+    return this;
+  }
+
+  public boolean isPauseWhenClipped() {
+    return mVisibilityTracker.isPauseWhenClipped();
+  }
+
+  /**
+   * Sets whether the shimmer also stops while the window has lost focus, for example to another
+   * app in multi-window mode. It always stops while the window is hidden. Disabled by default.
+   */
+  public ShimmerListOverlay setPauseOnWindowFocusLoss(boolean pauseOnWindowFocusLoss) {
+    mVisibilityTracker.setPauseOnWindowFocusLoss(pauseOnWindowFocusLoss);
+    return this;
+  }
+
+  public boolean isPauseOnWindowFocusLoss() {
+    return mVisibilityTracker.isPauseOnWindowFocusLoss();
+  }
+
+  private boolean isListAttached() {
+    return mList.getWindowToken() != null;
+  }
+
+  private void setPreDrawListenerAdded(boolean added) {
+    if (added == mPreDrawListenerAdded) {
+      return;
+    }
+    mPreDrawListenerAdded = added;
+    if (added) {
+      mList.getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+    } else {
+      mList.getViewTreeObserver().removeOnPreDrawListener(mPreDrawListener);
+    }
+  }
+
+  private void updateBounds(int width, int height) {
+    mOverlayDrawable.setBounds(0, 0, width, height);
+    mShimmerDrawable.setBounds(0, 0, width, height);
+  }
+
+  /** Return whether the shimmer has to be composited with the rows in a layer. */
+  private boolean needsCompositing() {
+    final Shimmer shimmer = mShimmerDrawable.getShimmer();
+    return shimmer != null && shimmer.clipToChildren;
+  }
+
+  /** Masking without the layer would reach through to whatever is drawn behind the list. */
+  private boolean canDrawRows() {
+    return mOwnsLayer || !needsCompositing();
+  }
+
+  private void updateLayerType(boolean listAttached) {
+    final boolean wantsLayer =
+        mAttached && listAttached && needsCompositing() && mShimmerDrawable.isShimmerStarted();
+    if (wantsLayer && !mOwnsLayer) {
+      mOwnsLayer = true;
+      mList.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+    } else if (!wantsLayer && mOwnsLayer) {
+      mOwnsLayer = false;
+      mList.setLayerType(View.LAYER_TYPE_NONE, null);
+    }
+  }
+
+  private boolean isSkeleton(View child) {
+    return child.getVisibility() == View.VISIBLE
+        && (mSkeletonMatcher == null || mSkeletonMatcher.isSkeleton(child));
+  }
+
+  /** Draws the shared shimmer over every skeleton row, forwarding its invalidations. */
+  private final class OverlayDrawable extends Drawable implements Drawable.Callback {
+    // The row rects recorded by the last draw, as left, top, right, bottom
+    private float[] mRowRects = new float[32];
+    private int mRowRectCount;
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+      mRowRectCount = 0;
+      if (!canDrawRows()) {
+        return;
+      }
+      for (int i = 0, count = mList.getChildCount(); i < count; i++) {
+        final View child = mList.getChildAt(i);
+        if (!isSkeleton(child)) {
+          continue;
+        }
+        final float left = child.getLeft() + child.getTranslationX();
+        final float top = child.getTop() + child.getTranslationY();
+        final float right = left + child.getWidth();
+        final float bottom = top + child.getHeight();
+        recordRowRect(left, top, right, bottom);
+        final int saveCount = canvas.save();
+        canvas.clipRect(left, top, right, bottom);
+        mShimmerDrawable.draw(canvas);
+        canvas.restoreToCount(saveCount);
+      }
+    }
+
+    /** Return whether the skeleton rows differ from the ones the last draw clipped to. */
+    boolean haveRowsMoved() {
+      int offset = 0;
+      for (int i = 0, count = mList.getChildCount(); i < count; i++) {
+        final View child = mList.getChildAt(i);
+        if (!isSkeleton(child)) {
+          continue;
+        }
+        final float left = child.getLeft() + child.getTranslationX();
+        final float top = child.getTop() + child.getTranslationY();
+        if (offset + 4 > mRowRectCount * 4
+            || mRowRects[offset] != left
+            || mRowRects[offset + 1] != top
+            || mRowRects[offset + 2] != left + child.getWidth()
+            || mRowRects[offset + 3] != top + child.getHeight()) {
+          return true;
+        }
+        offset += 4;
+      }
+      return offset != mRowRectCount * 4;
+    }
+
+    private void recordRowRect(float left, float top, float right, float bottom) {
+      final int offset = mRowRectCount * 4;
+      if (offset + 4 > mRowRects.length) {
+        mRowRects = Arrays.copyOf(mRowRects, mRowRects.length * 2);
+      }
+      mRowRects[offset] = left;
+      mRowRects[offset + 1] = top;
+      mRowRects[offset + 2] = right;
+      mRowRects[offset + 3] = bottom;
+      mRowRectCount++;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+      // No-op, modify the Shimmer object you pass in instead
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+      // No-op, modify the Shimmer object you pass in instead
+    }
+
+    @Override
+    public int getOpacity() {
+      return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable who) {
+      invalidateSelf();
+      mVisibilityTracker.onShimmerFrame();
+      // The quality controller may hold or release the shimmer without going through the overlay
+      if (mOwnsLayer != mShimmerDrawable.isShimmerStarted() && (mOwnsLayer || needsCompositing())) {
+        updateLayerType(isListAttached());
+      }
+    }
+
+    @Override
+    public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+      scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+      unscheduleSelf(what);
+    }
+  }
+}
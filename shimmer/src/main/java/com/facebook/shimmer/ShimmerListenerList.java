@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+
+/**
+ * The listeners attached to a source shared between shimmers, such as {@link ShimmerClock}.
+ * Dispatching goes over a snapshot, so that listeners may detach themselves while being
+ * dispatched to. Must only be used from the main thread.
+ */
+final class ShimmerListenerList<L> {
+  /** Delivers the current event to a single listener. */
+  interface Dispatcher<L> {
+    void dispatch(@NonNull L listener);
+  }
+
+  private final ArrayList<L> mListeners = new ArrayList<>();
+  private final ArrayList<L> mDispatchListeners = new ArrayList<>();
+
+  /** Adds the listener. Return whether it was not attached yet. */
+  boolean add(@NonNull L listener) {
+    if (mListeners.contains(listener)) {
+      return false;
+    }
+    mListeners.add(listener);
+    return true;
+  }
+
+  /** Removes the listener. Return whether it was attached. */
+  boolean remove(@NonNull L listener) {
+    return mListeners.remove(listener);
+  }
+
+  int size() {
+    return mListeners.size();
+  }
+
+  boolean isEmpty() {
+    return mListeners.isEmpty();
+  }
+
+  void dispatch(@NonNull Dispatcher<L> dispatcher) {
+    mDispatchListeners.addAll(mListeners);
+    for (int i = 0, size = mDispatchListeners.size(); i < size; i++) {
+      dispatcher.dispatch(mDispatchListeners.get(i));
+    }
+    mDispatchListeners.clear();
+  }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.provider.Settings;
+import androidx.annotation.FloatRange;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Decides whether shimmers should animate at all. Motion is reduced while the system's animator
+ * duration scale is 0, which is how users turn animations off, while battery saver is on, and
+ * while the device is thermally throttled. Shimmers attached to a reduced policy hold a single
+ * static frame at {@link #getStaticProgress()}, without running an animator or invalidating.
+ *
+ * <p>The system is only observed while at least one started shimmer is attached. Battery saver
+ * requires Lollipop and thermal status Android 10, older versions ignore them. All methods must be
+ * called from the main thread.
+ */
+@MainThread
+public final class ShimmerMotionPolicy {
+  /** Places the highlight halfway through its sweep. */
+  public static final float DEFAULT_STATIC_PROGRESS = 0.5f;
+
+  private static final int ANDROID_10 = 29;
+  // PowerManager.THERMAL_STATUS_SEVERE, from which the system itself starts to throttle
+  private static final int THERMAL_STATUS_SEVERE = 3;
+
+  private static ShimmerMotionPolicy sInstance;
+
+  /** Receives a callback whenever the policy changes. */
+  interface Listener {
+    void onMotionPolicyChanged(@NonNull ShimmerMotionPolicy policy);
+  }
+
+  private final ShimmerListenerList<Listener> mListeners = new ShimmerListenerList<>();
+  private final ShimmerListenerList.Dispatcher<Listener> mChangeDispatcher =
+      new ShimmerListenerList.Dispatcher<Listener>() {
+        @Override
+        public void dispatch(@NonNull Listener listener) {
+          listener.onMotionPolicyChanged(ShimmerMotionPolicy.this);
+        }
+      };
+  private final Context mContext;
+  private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+  private final ContentObserver mSettingsObserver =
+      new ContentObserver(mHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+          update();
+        }
+      };
+
+  private final BroadcastReceiver mPowerSaveReceiver =
+      new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+          update();
+        }
+      };
+
+  private final Runnable mUpdateRunnable =
+      new Runnable() {
+        @Override
+        public void run() {
+          update();
+        }
+      };
+
+  private boolean mFollowsAnimatorDurationScale = true;
+  private boolean mFollowsPowerSaveMode = true;
+  private boolean mFollowsThermalStatus = true;
+  private float mStaticProgress = DEFAULT_STATIC_PROGRESS;
+
+  private boolean mObserving;
+  private boolean mMotionReduced;
+  private @Nullable Object mThermalListener;
+
+  /** Return the process-wide policy. */
+  public static ShimmerMotionPolicy getInstance(@NonNull Context context) {
+    if (sInstance == null) {
+      sInstance = new ShimmerMotionPolicy(context);
+    }
+    return sInstance;
+  }
+
+  public ShimmerMotionPolicy(@NonNull Context context) {
+    final Context applicationContext = context.getApplicationContext();
+    mContext = applicationContext != null ? applicationContext : context;
+  }
+
+  /** Sets whether an animator duration scale of 0 reduces motion. Defaults to true. */
+  public ShimmerMotionPolicy setFollowsAnimatorDurationScale(boolean follows) {
+    mFollowsAnimatorDurationScale = follows;
+    update();
+    return this;
+  }
+
+  public boolean followsAnimatorDurationScale() {
+    return mFollowsAnimatorDurationScale;
+  }
+
+  /** Sets whether battery saver reduces motion. Defaults to true. */
+  public ShimmerMotionPolicy setFollowsPowerSaveMode(boolean follows) {
+    mFollowsPowerSaveMode = follows;
+    update();
+    return this;
+  }
+
+  public boolean followsPowerSaveMode() {
+    return mFollowsPowerSaveMode;
+  }
+
+  /** Sets whether severe thermal throttling reduces motion. Defaults to true. */
+  public ShimmerMotionPolicy setFollowsThermalStatus(boolean follows) {
+    mFollowsThermalStatus = follows;
+    update();
+    return this;
+  }
+
+  public boolean followsThermalStatus() {
+    return mFollowsThermalStatus;
+  }
+
+  /**
+   * Sets the progress of the static frame shown while motion is reduced, as accepted by {@link
+   * ShimmerDrawable#setStaticAnimationProgress(float)}.
+   */
+  public ShimmerMotionPolicy setStaticProgress(@FloatRange(from = 0, to = 1) float progress) {
+    if (progress < 0f || progress > 1f) {
+      throw new IllegalArgumentException("Given invalid static progress: " + progress);
+    }
+    if (Float.compare(progress, mStaticProgress) != 0) {
+      mStaticProgress = progress;
+      dispatchChanged();
+    }
+    return this;
+  }
+
+  public float getStaticProgress() {
+    return mStaticProgress;
+  }
+
+  /** Return whether shimmers should currently hold a static frame. */
+  public boolean isMotionReduced() {
+    return mObserving ? mMotionReduced : readMotionReduced();
+  }
+
+  /** Return the number of shimmers currently attached to this policy. */
+  public int getListenerCount() {
+    return mListeners.size();
+  }
+
+  void addListener(@NonNull Listener listener) {
+    if (!mListeners.add(listener)) {
+      return;
+    }
+    if (mListeners.size() == 1) {
+      startObserving();
+    }
+  }
+
+  void removeListener(@NonNull Listener listener) {
+    mListeners.remove(listener);
+    if (mListeners.isEmpty()) {
+      stopObserving();
+    }
+  }
+
+  private void startObserving() {
+    if (mObserving) {
+      return;
+    }
+    mObserving = true;
+    mMotionReduced = readMotionReduced();
+    mContext
+        .getContentResolver()
+        .registerContentObserver(getAnimatorDurationScaleUri(), false, mSettingsObserver);
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+      mContext.registerReceiver(
+          mPowerSaveReceiver, new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+    }
+    if (Build.VERSION.SDK_INT >= ANDROID_10) {
+      mThermalListener = ThermalStatus.addListener(getPowerManager(), mUpdateRunnable);
+    }
+  }
+
+  private void stopObserving() {
+    if (!mObserving) {
+      return;
+    }
+    mObserving = false;
+    mContext.getContentResolver().unregisterContentObserver(mSettingsObserver);
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+      mContext.unregisterReceiver(mPowerSaveReceiver);
+    }
+    if (mThermalListener != null) {
+      ThermalStatus.removeListener(getPowerManager(), mThermalListener);
+      mThermalListener = null;
+    }
+  }
+
+  private void update() {
+    if (!mObserving) {
+      return;
+    }
+    final boolean motionReduced = readMotionReduced();
+    if (motionReduced != mMotionReduced) {
+      mMotionReduced = motionReduced;
+      dispatchChanged();
+    }
+  }
+
+  private void dispatchChanged() {
+    mListeners.dispatch(mChangeDispatcher);
+  }
+
+  private boolean readMotionReduced() {
+    if (mFollowsAnimatorDurationScale && readAnimatorDurationScale() == 0f) {
+      return true;
+    }
+    final PowerManager powerManager = getPowerManager();
+    if (powerManager == null) {
+      return false;
+    }
+    if (mFollowsPowerSaveMode
+        && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+        && powerManager.isPowerSaveMode()) {
+      return true;
+    }
+    return mFollowsThermalStatus
+        && Build.VERSION.SDK_INT >= ANDROID_10
+        && ThermalStatus.get(powerManager) >= THERMAL_STATUS_SEVERE;
+  }
+
+  @SuppressWarnings("deprecation")
+  private float readAnimatorDurationScale() {
+    final ContentResolver resolver = mContext.getContentResolver();
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+      return Settings.Global.getFloat(resolver, Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+    }
+    return Settings.System.getFloat(resolver, Settings.System.ANIMATOR_DURATION_SCALE, 1f);
+  }
+
+  @SuppressWarnings("deprecation")
+  private static Uri getAnimatorDurationScaleUri() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+      return Settings.Global.getUriFor(Settings.Global.ANIMATOR_DURATION_SCALE);
+    }
+    return Settings.System.getUriFor(Settings.System.ANIMATOR_DURATION_SCALE);
+  }
+
+  private @Nullable PowerManager getPowerManager() {
+    return (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
+  }
+
+  /**
+   * Reads the thermal status of Android 10 and newer. The methods are newer than the SDK this
+   * library compiles against, so they are looked up reflectively.
+   */
+  @TargetApi(ANDROID_10)
+  private static final class ThermalStatus {
+    private static boolean sLookedUp;
+    private static @Nullable Class<?> sListenerClass;
+    private static @Nullable Method sGetCurrentThermalStatus;
+    private static @Nullable Method sAddThermalStatusListener;
+    private static @Nullable Method sRemoveThermalStatusListener;
+
+    private ThermalStatus() {}
+
+    static int get(PowerManager powerManager) {
+      lookUp();
+      if (sGetCurrentThermalStatus == null) {
+        return 0;
+      }
+      try {
+        return (Integer) sGetCurrentThermalStatus.invoke(powerManager);
+      } catch (Exception e) {
+        return 0;
+      }
+    }
+
+    /** Runs the given runnable whenever the status changes. Return the listener to remove. */
+    static @Nullable Object addListener(
+        @Nullable PowerManager powerManager, final Runnable onChanged) {
+      lookUp();
+      if (powerManager == null || sListenerClass == null || sAddThermalStatusListener == null) {
+        return null;
+      }
+      final Object listener =
+          Proxy.newProxyInstance(
+              sListenerClass.getClassLoader(),
+              new Class<?>[] {sListenerClass},
+              new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                  if (method.getDeclaringClass() == Object.class) {
+                    // The platform keeps listeners in a map, so identity has to hold up
+                    switch (method.getName()) {
+                      case "equals":
+                        return proxy == args[0];
+                      case "hashCode":
+                        return System.identityHashCode(proxy);
+                      default:
+                        return "ShimmerThermalStatusListener";
+                    }
+                  }
+                  onChanged.run();
+                  return null;
+                }
+              });
+      try {
+        sAddThermalStatusListener.invoke(powerManager, listener);
+        return listener;
+      } catch (Exception e) {
+        return null;
+      }
+    }
+
+    static void removeListener(@Nullable PowerManager powerManager, Object listener) {
+      if (powerManager == null || sRemoveThermalStatusListener == null) {
+        return;
+      }
+      try {
+        sRemoveThermalStatusListener.invoke(powerManager, listener);
+      } catch (Exception e) {
+        // The listener was never added
+      }
+    }
+
+    private static void lookUp() {
+      if (sLookedUp) {
+        return;
+      }
+      sLookedUp = true;
+      try {
+        sListenerClass = Class.forName("android.os.PowerManager$OnThermalStatusChangedListener");
+        sGetCurrentThermalStatus = PowerManager.class.getMethod("getCurrentThermalStatus");
+        sAddThermalStatusListener =
+            PowerManager.class.getMethod("addThermalStatusListener", sListenerClass);
+        sRemoveThermalStatusListener =
+            PowerManager.class.getMethod("removeThermalStatusListener", sListenerClass);
+      } catch (Exception e) {
+        sListenerClass = null;
+        sGetCurrentThermalStatus = null;
+        sAddThermalStatusListener = null;
+        sRemoveThermalStatusListener = null;
+      }
+    }
+  }
+}
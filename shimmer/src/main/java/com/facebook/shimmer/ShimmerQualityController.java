@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.WindowManager;
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Watches how long frames take and steps the quality of the shimmers attached to it down while
+ * frames are being missed, and back up once they recover. This keeps loading screens responsive on
+ * devices under load, where the shimmer would otherwise compete with inflating the content.
+ *
+ * <p>Frames are only watched while at least one started shimmer is attached. Frame durations come
+ * from {@link Choreographer}, so before Jellybean the quality always stays at {@link Tier#FULL}.
+ * They are compared against the default display's refresh rate, which is read again whenever it
+ * changes from Jellybean MR1 onwards, including when a shimmer requested a lower one itself. At
+ * {@link Tier#STATIC} nothing animates, so frames are only sampled now and then to find out
+ * whether they have recovered. All methods must be called from the main thread.
+ */
+@MainThread
+public final class ShimmerQualityController {
+  /** How much of the shimmer is drawn. Higher tiers are cheaper. */
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({Tier.FULL, Tier.REDUCED_FRAME_RATE, Tier.LOW, Tier.STATIC})
+  public @interface Tier {
+    /** The shimmer draws as configured. */
+    int FULL = 0;
+    /** The shimmer draws at most {@link #REDUCED_FRAME_RATE_FPS} frames per second. */
+    int REDUCED_FRAME_RATE = 1;
+    /** As above, and without antialiasing. */
+    int LOW = 2;
+    /** The shimmer holds a single static frame, without a layer. */
+    int STATIC = 3;
+  }
+
+  /** The frame rate shimmers are capped at from {@link Tier#REDUCED_FRAME_RATE} onwards. */
+  public static final float REDUCED_FRAME_RATE_FPS = 30f;
+
+  private static final int WINDOW_FRAMES = 30;
+  private static final int MAX_JANKY_FRAMES = 3;
+  private static final int RECOVERY_WINDOWS = 4;
+  // A frame taking this many vsync intervals or more was missed
+  private static final float JANK_THRESHOLD = 1.5f;
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final float DEFAULT_REFRESH_RATE = 60f;
+  // How long frames go unwatched at the static tier before the next sample
+  private static final long STATIC_SAMPLE_DELAY_MILLIS = 1000L;
+
+  private static ShimmerQualityController sInstance;
+
+  /** Receives a callback whenever the tier changes. */
+  interface Listener {
+    void onQualityTierChanged(@Tier int tier);
+  }
+
+  private final ShimmerListenerList<Listener> mListeners = new ShimmerListenerList<>();
+  private final ShimmerListenerList.Dispatcher<Listener> mTierDispatcher =
+      new ShimmerListenerList.Dispatcher<Listener>() {
+        @Override
+        public void dispatch(@NonNull Listener listener) {
+          listener.onQualityTierChanged(mTier);
+        }
+      };
+  private final FrameMonitor mFrameMonitor =
+      Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? new FrameMonitor(this) : null;
+  private final Context mContext;
+
+  private @Tier int mTier = Tier.FULL;
+  private long mVsyncIntervalNanos = (long) (NANOS_PER_SECOND / DEFAULT_REFRESH_RATE);
+  private @Nullable Object mDisplayListener;
+  private long mLastFrameTimeNanos = -1L;
+  private int mWindowFrameCount;
+  private int mWindowJankyFrameCount;
+  private int mSmoothWindowCount;
+
+  /** Return the process-wide controller. */
+  public static ShimmerQualityController getInstance(@NonNull Context context) {
+    if (sInstance == null) {
+      sInstance = new ShimmerQualityController(context);
+    }
+    return sInstance;
+  }
+
+  public ShimmerQualityController(@NonNull Context context) {
+    final Context applicationContext = context.getApplicationContext();
+    mContext = applicationContext != null ? applicationContext : context;
+  }
+
+  /** Return the current tier. See {@link Tier}. */
+  public @Tier int getTier() {
+    return mTier;
+  }
+
+  /** Goes back to {@link Tier#FULL} and forgets the frames measured so far. */
+  public void reset() {
+    mLastFrameTimeNanos = -1L;
+    resetWindow();
+    mSmoothWindowCount = 0;
+    setTier(Tier.FULL);
+    if (!mListeners.isEmpty() && mFrameMonitor != null) {
+      // Watch every frame again, in case they were only being sampled
+      mFrameMonitor.stop();
+      mFrameMonitor.start(0L);
+    }
+  }
+
+  /** Return the number of shimmers currently attached to this controller. */
+  public int getListenerCount() {
+    return mListeners.size();
+  }
+
+  void addListener(@NonNull Listener listener) {
+    if (!mListeners.add(listener)) {
+      return;
+    }
+    if (mListeners.size() == 1 && mFrameMonitor != null) {
+      mLastFrameTimeNanos = -1L;
+      startObservingDisplay();
+      mFrameMonitor.start(mTier == Tier.STATIC ? STATIC_SAMPLE_DELAY_MILLIS : 0L);
+    }
+  }
+
+  void removeListener(@NonNull Listener listener) {
+    mListeners.remove(listener);
+    if (mListeners.isEmpty() && mFrameMonitor != null) {
+      mFrameMonitor.stop();
+      stopObservingDisplay();
+    }
+  }
+
+  void onFrame(long frameTimeNanos) {
+    if (mLastFrameTimeNanos < 0) {
+      mLastFrameTimeNanos = frameTimeNanos;
+      return;
+    }
+    final long delta = frameTimeNanos - mLastFrameTimeNanos;
+    mLastFrameTimeNanos = frameTimeNanos;
+    if (delta <= 0) {
+      return;
+    }
+    mWindowFrameCount++;
+    if (delta >= JANK_THRESHOLD * mVsyncIntervalNanos) {
+      mWindowJankyFrameCount++;
+    }
+
+    if (mWindowJankyFrameCount >= MAX_JANKY_FRAMES) {
+      mSmoothWindowCount = 0;
+      resetWindow();
+      if (mTier < Tier.STATIC) {
+        setTier(mTier + 1);
+      }
+    } else if (mWindowFrameCount >= WINDOW_FRAMES) {
+      mSmoothWindowCount = mWindowJankyFrameCount == 0 ? mSmoothWindowCount + 1 : 0;
+      resetWindow();
+      if (mSmoothWindowCount >= RECOVERY_WINDOWS && mTier > Tier.FULL) {
+        mSmoothWindowCount = 0;
+        setTier(mTier - 1);
+      }
+    } else {
+      return;
+    }
+
+    if (mTier == Tier.STATIC && !mListeners.isEmpty()) {
+      // Nothing animates any more, so stop waking up on every vsync until the next sample
+      mLastFrameTimeNanos = -1L;
+      mFrameMonitor.stop();
+      mFrameMonitor.start(STATIC_SAMPLE_DELAY_MILLIS);
+    }
+  }
+
+  private void resetWindow() {
+    mWindowFrameCount = 0;
+    mWindowJankyFrameCount = 0;
+  }
+
+  private void startObservingDisplay() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+      mDisplayListener = DisplayListener.add(mContext, this);
+    }
+    readRefreshRate();
+  }
+
+  private void stopObservingDisplay() {
+    if (mDisplayListener != null) {
+      DisplayListener.remove(mContext, mDisplayListener);
+      mDisplayListener = null;
+    }
+  }
+
+  private void readRefreshRate() {
+    final Display display;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+      display = DisplayListener.getDefaultDisplay(mContext);
+    } else {
+      final WindowManager windowManager =
+          (WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE);
+      display = windowManager != null ? windowManager.getDefaultDisplay() : null;
+    }
+    final float refreshRate = display != null ? display.getRefreshRate() : 0f;
+    mVsyncIntervalNanos =
+        (long) (NANOS_PER_SECOND / (refreshRate > 0f ? refreshRate : DEFAULT_REFRESH_RATE));
+  }
+
+  private void setTier(@Tier int tier) {
+    if (tier == mTier) {
+      return;
+    }
+    mTier = tier;
+    mListeners.dispatch(mTierDispatcher);
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private static final class FrameMonitor implements Choreographer.FrameCallback {
+    private final ShimmerQualityController mController;
+    private boolean mRunning;
+
+    FrameMonitor(ShimmerQualityController controller) {
+      mController = controller;
+    }
+
+    void start(long delayMillis) {
+      if (!mRunning) {
+        mRunning = true;
+        Choreographer.getInstance().postFrameCallbackDelayed(this, delayMillis);
+      }
+    }
+
+    void stop() {
+      if (mRunning) {
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+      }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      if (!mRunning) {
+        return;
+      }
+      mController.onFrame(frameTimeNanos);
+      if (mRunning) {
+        Choreographer.getInstance().postFrameCallback(this);
+      }
+    }
+  }
+
+  /** Only loaded on Jellybean MR1 and newer, where display listeners exist. */
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+  private static final class DisplayListener implements DisplayManager.DisplayListener {
+    private final ShimmerQualityController mController;
+
+    private DisplayListener(ShimmerQualityController controller) {
+      mController = controller;
+    }
+
+    static @Nullable Display getDefaultDisplay(Context context) {
+      final DisplayManager displayManager = getDisplayManager(context);
+      return displayManager != null ? displayManager.getDisplay(Display.DEFAULT_DISPLAY) : null;
+    }
+
+    static @Nullable Object add(Context context, ShimmerQualityController controller) {
+      final DisplayManager displayManager = getDisplayManager(context);
+      if (displayManager == null) {
+        return null;
+      }
+      final DisplayListener listener = new DisplayListener(controller);
+      displayManager.registerDisplayListener(listener, null);
+      return listener;
+    }
+
+    static void remove(Context context, Object listener) {
+      final DisplayManager displayManager = getDisplayManager(context);
+      if (displayManager != null) {
+        displayManager.unregisterDisplayListener((DisplayListener) listener);
+      }
+    }
+
+    private static @Nullable DisplayManager getDisplayManager(Context context) {
+      return (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    }
+
+    @Override
+    public void onDisplayAdded(int displayId) {}
+
+    @Override
+    public void onDisplayRemoved(int displayId) {}
+
+    @Override
+    public void onDisplayChanged(int displayId) {
+      if (displayId == Display.DEFAULT_DISPLAY) {
+        mController.readRefreshRate();
+      }
+    }
+  }
+}
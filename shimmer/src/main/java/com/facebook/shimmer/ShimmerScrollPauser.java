@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+
+/**
+ * Pauses shimmers while a list flings, leaving the frame budget to binding and laying out the rows
+ * scrolling in. Placeholders moving past at that speed are barely visible anyway. Registered
+ * shimmers keep their phase and continue from it once the list settles.
+ *
+ * <p>Forward the list's scroll state to {@link #onScrollStateChanged(int)}, for example from a
+ * RecyclerView's OnScrollListener or an AbsListView's OnScrollListener, whose states share the
+ * values of {@link ScrollState}. Registered shimmers are held strongly, so unregister them when
+ * they are recycled for content. All methods must be called from the main thread.
+ */
+@MainThread
+public final class ShimmerScrollPauser {
+  /** The scroll state of a list, matching the constants of RecyclerView and AbsListView. */
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({ScrollState.IDLE, ScrollState.DRAGGING, ScrollState.SETTLING})
+  public @interface ScrollState {
+    /** The list is not scrolling. */
+    int IDLE = 0;
+    /** The list is being dragged by the user. */
+    int DRAGGING = 1;
+    /** The list is flinging or scrolling to a position on its own. */
+    int SETTLING = 2;
+  }
+
+  private final ArrayList<ShimmerDrawable> mDrawables = new ArrayList<>();
+
+  private @ScrollState int mScrollState = ScrollState.IDLE;
+  private boolean mPauseWhileDragging;
+
+  /** Sets whether the shimmers also pause while the list is dragged. Defaults to false. */
+  public ShimmerScrollPauser setPauseWhileDragging(boolean pauseWhileDragging) {
+    if (pauseWhileDragging != mPauseWhileDragging) {
+      mPauseWhileDragging = pauseWhileDragging;
+      dispatchScrollHeld();
+    }
+    return this;
+  }
+
+  public boolean isPauseWhileDragging() {
+    return mPauseWhileDragging;
+  }
+
+  public void register(@NonNull ShimmerDrawable drawable) {
+    if (mDrawables.contains(drawable)) {
+      return;
+    }
+    mDrawables.add(drawable);
+    drawable.setScrollHeld(isScrollHeld());
+  }
+
+  public void register(@NonNull ShimmerFrameLayout layout) {
+    register(layout.getShimmerDrawable());
+  }
+
+  public void register(@NonNull ShimmerSkeletonView view) {
+    register(view.getShimmerDrawable());
+  }
+
+  /** Stops pausing the given drawable, resuming it if the list is still flinging. */
+  public void unregister(@NonNull ShimmerDrawable drawable) {
+    if (mDrawables.remove(drawable)) {
+      drawable.setScrollHeld(false);
+    }
+  }
+
+  public void unregister(@NonNull ShimmerFrameLayout layout) {
+    unregister(layout.getShimmerDrawable());
+  }
+
+  public void unregister(@NonNull ShimmerSkeletonView view) {
+    unregister(view.getShimmerDrawable());
+  }
+
+  /** Resumes and forgets every registered shimmer. */
+  public void clear() {
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      mDrawables.get(i).setScrollHeld(false);
+    }
+    mDrawables.clear();
+  }
+
+  /** Return the number of registered shimmers. */
+  public int getShimmerCount() {
+    return mDrawables.size();
+  }
+
+  /** Pauses or resumes the registered shimmers for the list's new scroll state. */
+  public void onScrollStateChanged(@ScrollState int scrollState) {
+    if (scrollState != mScrollState) {
+      mScrollState = scrollState;
+      dispatchScrollHeld();
+    }
+  }
+
+  public @ScrollState int getScrollState() {
+    return mScrollState;
+  }
+
+  private boolean isScrollHeld() {
+    return mScrollState == ScrollState.SETTLING
+        || (mPauseWhileDragging && mScrollState == ScrollState.DRAGGING);
+  }
+
+  private void dispatchScrollHeld() {
+    final boolean held = isScrollHeld();
+    for (int i = 0, size = mDrawables.size(); i < size; i++) {
+      mDrawables.get(i).setScrollHeld(held);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.graphics.LinearGradient;
+import android.graphics.RadialGradient;
+import android.graphics.Shader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the gradient shaders used by {@link ShimmerDrawable}, so that drawables of
+ * the same size and configuration share one {@link Shader}. Cached shaders are never given a local
+ * matrix; each drawable positions the shared shader through the canvas instead.
+ */
+final class ShimmerShaderCache {
+  private static final int MAX_SIZE = 32;
+
+  private static final LinkedHashMap<Key, Shader> sShaders =
+      new LinkedHashMap<Key, Shader>(MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Shader> eldest) {
+          return size() > MAX_SIZE;
+        }
+      };
+
+  private ShimmerShaderCache() {}
+
+  static synchronized Shader obtain(Shimmer shimmer, int width, int height) {
+    final Key key = new Key(shimmer, width, height);
+    Shader shader = sShaders.get(key);
+    if (shader == null) {
+      shader = createShader(shimmer, shimmer.colors, width, height);
+      sShaders.put(key, shader);
+    }
+    return shader;
+  }
+
+  /**
+   * Creates a gradient for the given Shimmer using the given colors instead of its own. The result
+   * is not cached, so it is safe to give it a local matrix.
+   */
+  static Shader createShader(Shimmer shimmer, int[] colors, int width, int height) {
+    switch (shimmer.shape) {
+      default:
+      case Shimmer.Shape.LINEAR:
+        boolean vertical = isVertical(shimmer);
+        int endX = vertical ? 0 : width;
+        int endY = vertical ? height : 0;
+        return new LinearGradient(
+            0, 0, endX, endY, colors, shimmer.positions, Shader.TileMode.CLAMP);
+      case Shimmer.Shape.RADIAL:
+        return new RadialGradient(
+            width / 2f,
+            height / 2f,
+            (float) (Math.max(width, height) / Math.sqrt(2)),
+            colors,
+            shimmer.positions,
+            Shader.TileMode.CLAMP);
+    }
+  }
+
+  private static boolean isVertical(Shimmer shimmer) {
+    return shimmer.direction == Shimmer.Direction.TOP_TO_BOTTOM
+        || shimmer.direction == Shimmer.Direction.BOTTOM_TO_TOP;
+  }
+
+  /** Borrows the arrays of a built Shimmer, which never change once built. */
+  private static final class Key {
+    final int shape;
+    // Opposite directions produce the same gradient, only the orientation matters
+    final boolean vertical;
+    final int width;
+    final int height;
+    final int[] colors;
+    final float[] positions;
+    final int hashCode;
+
+    Key(Shimmer shimmer, int width, int height) {
+      this(
+          shimmer.shape,
+          shimmer.shape == Shimmer.Shape.LINEAR && isVertical(shimmer),
+          width,
+          height,
+          shimmer.colors,
+          shimmer.positions);
+    }
+
+    private Key(
+        int shape, boolean vertical, int width, int height, int[] colors, float[] positions) {
+      this.shape = shape;
+      this.vertical = vertical;
+      this.width = width;
+      this.height = height;
+      this.colors = colors;
+      this.positions = positions;
+      int result = shape;
+      result = 31 * result + (vertical ? 1 : 0);
+      result = 31 * result + width;
+      result = 31 * result + height;
+      result = 31 * result + Arrays.hashCode(colors);
+      result = 31 * result + Arrays.hashCode(positions);
+      hashCode = result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return shape == other.shape
+          && vertical == other.vertical
+          && width == other.width
+          && height == other.height
+          && Arrays.equals(colors, other.colors)
+          && Arrays.equals(positions, other.positions);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
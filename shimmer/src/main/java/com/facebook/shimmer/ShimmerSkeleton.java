@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * A compact description of the bones of a skeleton placeholder, drawn by {@link
+ * ShimmerSkeletonView}. Each bone is a rounded rectangle given as four consecutive values (left,
+ * top, right, bottom) and one corner radius in pixels.
+ */
+public final class ShimmerSkeleton {
+  /** How the bone rectangles are measured. */
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({SizeMode.ABSOLUTE, SizeMode.PERCENT})
+  public @interface SizeMode {
+    /** Bones are in pixels. */
+    int ABSOLUTE = 0;
+    /** Bones are percentages, from 0 to 100, of the view's width and height. */
+    int PERCENT = 1;
+  }
+
+  private static final int VALUES_PER_BONE = 4;
+
+  private final float[] mBones;
+  private final float[] mCornerRadii;
+  private final @SizeMode int mSizeMode;
+  private final int mContentWidth;
+  private final int mContentHeight;
+
+  /**
+   * @param bones Four values per bone: left, top, right and bottom.
+   * @param cornerRadii One corner radius per bone, in pixels.
+   * @param sizeMode How the bone rectangles are measured. See {@link SizeMode}.
+   */
+  public ShimmerSkeleton(
+      @NonNull float[] bones, @NonNull float[] cornerRadii, @SizeMode int sizeMode) {
+    this(bones, cornerRadii, sizeMode, 0, 0);
+  }
+
+  /**
+   * Creates an absolute skeleton that measures at least as large as the given size, such as the
+   * size of the view it was generated from.
+   */
+  ShimmerSkeleton(
+      @NonNull float[] bones,
+      @NonNull float[] cornerRadii,
+      @SizeMode int sizeMode,
+      int contentWidth,
+      int contentHeight) {
+    if (bones.length % VALUES_PER_BONE != 0) {
+      throw new IllegalArgumentException("Given invalid bone count: " + bones.length);
+    }
+    if (cornerRadii.length != bones.length / VALUES_PER_BONE) {
+      throw new IllegalArgumentException(
+          "Given invalid corner radius count: " + cornerRadii.length);
+    }
+    mBones = bones.clone();
+    mCornerRadii = cornerRadii.clone();
+    mSizeMode = sizeMode;
+    mContentWidth = contentWidth;
+    mContentHeight = contentHeight;
+  }
+
+  public int getBoneCount() {
+    return mCornerRadii.length;
+  }
+
+  public @SizeMode int getSizeMode() {
+    return mSizeMode;
+  }
+
+  /** Return the width needed to fit every bone, or 0 for percentage based skeletons. */
+  int getContentWidth() {
+    return mSizeMode == SizeMode.ABSOLUTE
+        ? Math.max(mContentWidth, (int) Math.ceil(maxValue(2)))
+        : 0;
+  }
+
+  /** Return the height needed to fit every bone, or 0 for percentage based skeletons. */
+  int getContentHeight() {
+    return mSizeMode == SizeMode.ABSOLUTE
+        ? Math.max(mContentHeight, (int) Math.ceil(maxValue(3)))
+        : 0;
+  }
+
+  /** Adds every bone to the given path, laid out in a view of the given size. */
+  void addToPath(Path path, int width, int height, RectF tempRect) {
+    final float scaleX = mSizeMode == SizeMode.PERCENT ? width / 100f : 1f;
+    final float scaleY = mSizeMode == SizeMode.PERCENT ? height / 100f : 1f;
+    for (int i = 0; i < mCornerRadii.length; i++) {
+      final int offset = i * VALUES_PER_BONE;
+      tempRect.set(
+          mBones[offset] * scaleX,
+          mBones[offset + 1] * scaleY,
+          mBones[offset + 2] * scaleX,
+          mBones[offset + 3] * scaleY);
+      final float radius = mCornerRadii[i];
+      if (radius > 0f) {
+        path.addRoundRect(tempRect, radius, radius, Path.Direction.CW);
+      } else {
+        path.addRect(tempRect, Path.Direction.CW);
+      }
+    }
+  }
+
+  private float maxValue(int index) {
+    float max = 0f;
+    for (int i = index; i < mBones.length; i += VALUES_PER_BONE) {
+      max = Math.max(max, mBones[i]);
+    }
+    return max;
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.Px;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Generates a {@link ShimmerSkeleton} from a real item layout, so that placeholders no longer have
+ * to be kept in sync with it by hand. Every line of text becomes a bone as wide as the line, and
+ * every other leaf view becomes a bone covering its bounds.
+ *
+ * <p>Skeletons generated from a layout resource are cached per resource and width bucket, and per
+ * font scale, density, locale, UI mode and orientation, which all change how the layout is laid
+ * out. A bucket's skeleton is measured at the width of its first request, so rows that only
+ * differ in width by a few pixels share one skeleton.
+ */
+@MainThread
+public final class ShimmerSkeletonGenerator {
+  private static final int MAX_SIZE = 16;
+  private static final float WIDTH_BUCKET_DP = 16f;
+  private static final float CORNER_RADIUS_DP = 4f;
+
+  private static final LinkedHashMap<Key, ShimmerSkeleton> sSkeletons =
+      new LinkedHashMap<Key, ShimmerSkeleton>(MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ShimmerSkeleton> eldest) {
+          return size() > MAX_SIZE;
+        }
+      };
+
+  private ShimmerSkeletonGenerator() {}
+
+  /**
+   * Return the skeleton of the given layout laid out at the given width, inflating and measuring it
+   * only if no skeleton has been generated for its width bucket yet.
+   */
+  public static @NonNull ShimmerSkeleton fromLayout(
+      @NonNull Context context, @LayoutRes int layoutRes, @Px int width) {
+    final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+    final int bucketWidth = Math.max(1, Math.round(WIDTH_BUCKET_DP * metrics.density));
+    final Key key =
+        new Key(
+            layoutRes,
+            width / bucketWidth,
+            metrics.densityDpi,
+            context.getResources().getConfiguration());
+    ShimmerSkeleton skeleton = sSkeletons.get(key);
+    if (skeleton == null) {
+      final View view =
+          LayoutInflater.from(context).inflate(layoutRes, new FrameLayout(context), false);
+      view.measure(
+          View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+          View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+      view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+      skeleton = fromView(view);
+      sSkeletons.put(key, skeleton);
+    }
+    return skeleton;
+  }
+
+  /** Return the skeleton of a view that has already been measured and laid out. Not cached. */
+  public static @NonNull ShimmerSkeleton fromView(@NonNull View view) {
+    final Bones bones =
+        new Bones(CORNER_RADIUS_DP * view.getResources().getDisplayMetrics().density);
+    addBones(view, 0, 0, view.getWidth(), bones);
+    return bones.build(view.getWidth(), view.getHeight());
+  }
+
+  /** Drops every cached skeleton, for example to free memory once the placeholders are gone. */
+  public static void clearCache() {
+    sSkeletons.clear();
+  }
+
+  /**
+   * Adds the bones of the view, whose left and top edges sit at the given offsets. {@code
+   * parentRight} is where its parent's content ends, which bounds the placeholder of an empty text.
+   */
+  private static void addBones(View view, int left, int top, int parentRight, Bones out) {
+    if (view.getVisibility() != View.VISIBLE || view.getHeight() == 0) {
+      return;
+    }
+    if (view instanceof TextView) {
+      // An unbound wrap_content text has no width yet, but still stands for a line of text
+      addTextBones((TextView) view, left, top, parentRight, out);
+    } else if (view.getWidth() == 0) {
+      return;
+    } else if (view instanceof ViewGroup) {
+      final ViewGroup group = (ViewGroup) view;
+      final int contentRight = left + group.getWidth() - group.getPaddingRight();
+      for (int i = 0, count = group.getChildCount(); i < count; i++) {
+        final View child = group.getChildAt(i);
+        addBones(child, left + child.getLeft(), top + child.getTop(), contentRight, out);
+      }
+    } else {
+      out.add(left, top, left + view.getWidth(), top + view.getHeight());
+    }
+  }
+
+  private static void addTextBones(TextView view, int left, int top, int parentRight, Bones out) {
+    final TextPaint paint = view.getPaint();
+    final int textLeft = left + view.getTotalPaddingLeft();
+    final Layout layout = view.getLayout();
+    // The total padding includes the offset of the vertical gravity, but needs the layout
+    final int textTop =
+        top + (layout != null ? view.getTotalPaddingTop() : view.getExtendedPaddingTop());
+    if (layout == null || view.getText().length() == 0) {
+      // Nothing to measure, stand in a single line as wide as the text area, or as the rest of the
+      // parent's content for a text that wraps its still empty content
+      final int textRight =
+          view.getWidth() > view.getTotalPaddingLeft() + view.getTotalPaddingRight()
+              ? left + view.getWidth() - view.getTotalPaddingRight()
+              : parentRight;
+      if (textRight <= textLeft) {
+        return;
+      }
+      out.add(textLeft, textTop, textRight, textTop - paint.ascent() + paint.descent());
+      return;
+    }
+    if (view.getWidth() == 0) {
+      return;
+    }
+    // Only cover the glyphs of each line, not the line spacing around them
+    for (int i = 0, count = layout.getLineCount(); i < count; i++) {
+      final float lineLeft = layout.getLineLeft(i);
+      final float lineRight = layout.getLineRight(i);
+      if (lineRight <= lineLeft) {
+        continue;
+      }
+      final float baseline = textTop + layout.getLineBaseline(i);
+      out.add(
+          textLeft + lineLeft,
+          baseline + paint.ascent(),
+          textLeft + lineRight,
+          baseline + paint.descent());
+    }
+  }
+
+  /** Identifies a cached skeleton by everything that changes how its layout is laid out. */
+  private static final class Key {
+    private final int mLayoutRes;
+    private final int mWidthBucket;
+    private final int mDensityDpi;
+    private final float mFontScale;
+    private final int mUiMode;
+    private final int mOrientation;
+    private final @Nullable Locale mLocale;
+
+    Key(@LayoutRes int layoutRes, int widthBucket, int densityDpi, Configuration config) {
+      mLayoutRes = layoutRes;
+      mWidthBucket = widthBucket;
+      mDensityDpi = densityDpi;
+      mFontScale = config.fontScale;
+      mUiMode = config.uiMode;
+      mOrientation = config.orientation;
+      mLocale = getLocale(config);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static @Nullable Locale getLocale(Configuration config) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+        return config.getLocales().get(0);
+      }
+      return config.locale;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return mLayoutRes == other.mLayoutRes
+          && mWidthBucket == other.mWidthBucket
+          && mDensityDpi == other.mDensityDpi
+          && Float.compare(mFontScale, other.mFontScale) == 0
+          && mUiMode == other.mUiMode
+          && mOrientation == other.mOrientation
+          && (mLocale != null ? mLocale.equals(other.mLocale) : other.mLocale == null);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = mLayoutRes;
+      result = 31 * result + mWidthBucket;
+      result = 31 * result + mDensityDpi;
+      result = 31 * result + Float.floatToIntBits(mFontScale);
+      result = 31 * result + mUiMode;
+      result = 31 * result + mOrientation;
+      result = 31 * result + (mLocale != null ? mLocale.hashCode() : 0);
+      return result;
+    }
+  }
+
+  /** Collects bones into packed arrays. */
+  private static final class Bones {
+    private final float mCornerRadius;
+    private float[] mBones = new float[32];
+    private float[] mCornerRadii = new float[8];
+    private int mCount;
+
+    Bones(float cornerRadius) {
+      mCornerRadius = cornerRadius;
+    }
+
+    void add(float left, float top, float right, float bottom) {
+      if (mCount == mCornerRadii.length) {
+        mBones = Arrays.copyOf(mBones, mBones.length * 2);
+        mCornerRadii = Arrays.copyOf(mCornerRadii, mCornerRadii.length * 2);
+      }
+      final int offset = mCount * 4;
+      mBones[offset] = left;
+      mBones[offset + 1] = top;
+      mBones[offset + 2] = right;
+      mBones[offset + 3] = bottom;
+      mCornerRadii[mCount] = Math.min(mCornerRadius, (bottom - top) / 2f);
+      mCount++;
+    }
+
+    ShimmerSkeleton build(int width, int height) {
+      return new ShimmerSkeleton(
+          Arrays.copyOf(mBones, mCount * 4),
+          Arrays.copyOf(mCornerRadii, mCount),
+          ShimmerSkeleton.SizeMode.ABSOLUTE,
+          width,
+          height);
+    }
+  }
+}
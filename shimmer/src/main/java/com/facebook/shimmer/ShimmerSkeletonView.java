@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.View;
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Draws a skeleton placeholder from a {@link ShimmerSkeleton} instead of a hierarchy of
+ * placeholder views. All bones are drawn as a single path with the shimmer gradient applied
+ * directly, so there are no children to inflate, measure or lay out, and no offscreen layer.
+ */
+public class ShimmerSkeletonView extends View {
+  private static final @ColorInt int DEFAULT_BONE_COLOR = Color.LTGRAY;
+
+  private final ShimmerDrawable mShimmerDrawable = new ShimmerDrawable();
+  private final Path mBonePath = new Path();
+  private final RectF mTempRect = new RectF();
+  private final ShimmerVisibilityTracker mVisibilityTracker =
+      new ShimmerVisibilityTracker(this, mShimmerDrawable, null);
+
+  private @Nullable ShimmerSkeleton mSkeleton;
+
+  public ShimmerSkeletonView(Context context) {
+    super(context);
+    init(context, null);
+  }
+
+  public ShimmerSkeletonView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+    init(context, attrs);
+  }
+
+  public ShimmerSkeletonView(Context context, AttributeSet attrs, int defStyleAttr) {
+    super(context, attrs, defStyleAttr);
+    init(context, attrs);
+  }
+
+  @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+  public ShimmerSkeletonView(
+      Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+    super(context, attrs, defStyleAttr, defStyleRes);
+    init(context, attrs);
+  }
+
+  private void init(Context context, @Nullable AttributeSet attrs) {
+    mShimmerDrawable.setCallback(this);
+    mShimmerDrawable.setDirectMode(true);
+    mShimmerDrawable.setDirectPath(mBonePath);
+    mShimmerDrawable.setDirectColor(DEFAULT_BONE_COLOR);
+    mShimmerDrawable.setMotionPolicy(ShimmerMotionPolicy.getInstance(context));
+
+    if (attrs == null) {
+      setShimmer(new Shimmer.AlphaHighlightBuilder().build());
+      return;
+    }
+
+    TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.ShimmerFrameLayout, 0, 0);
+    try {
+      setShimmer(Shimmer.fromAttributes(a));
+    } finally {
+      a.recycle();
+    }
+  }
+
+  public ShimmerSkeletonView setShimmer(@Nullable Shimmer shimmer) {
+    mShimmerDrawable.setShimmer(shimmer);
+    mVisibilityTracker.updateWindowGeometry();
+    mVisibilityTracker.updateFrameRateHint();
+    return this;
+  }
+
+  public @Nullable Shimmer getShimmer() {
+    return mShimmerDrawable.getShimmer();
+  }
+
+  /** See {@link ShimmerDrawable#setShimmerClock(ShimmerClock)}. */
+  public ShimmerSkeletonView setShimmerClock(@Nullable ShimmerClock clock) {
+    mShimmerDrawable.setShimmerClock(clock);
+    return this;
+  }
+
+  /** See {@link ShimmerDrawable#setPhaseOffset(long)}. */
+  public ShimmerSkeletonView setPhaseOffset(long offsetMillis) {
+    mShimmerDrawable.setPhaseOffset(offsetMillis);
+    return this;
+  }
+
+  public long getPhaseOffset() {
+    return mShimmerDrawable.getPhaseOffset();
+  }
+
+  /**
+   * See {@link ShimmerDrawable#setMotionPolicy(ShimmerMotionPolicy)}. Defaults to {@link
+   * ShimmerMotionPolicy#getInstance(Context)}.
+   */
+  public ShimmerSkeletonView setMotionPolicy(@Nullable ShimmerMotionPolicy policy) {
+    mShimmerDrawable.setMotionPolicy(policy);
+    return this;
+  }
+
+  public @Nullable ShimmerMotionPolicy getMotionPolicy() {
+    return mShimmerDrawable.getMotionPolicy();
+  }
+
+  /** See {@link ShimmerDrawable#setQualityController(ShimmerQualityController)}. */
+  public ShimmerSkeletonView setQualityController(@Nullable ShimmerQualityController controller) {
+    mShimmerDrawable.setQualityController(controller);
+    return this;
+  }
+
+  public @Nullable ShimmerQualityController getQualityController() {
+    return mShimmerDrawable.getQualityController();
+  }
+
+  /** Sets the bones to draw. Pass null to draw nothing. */
+  public ShimmerSkeletonView setSkeleton(@Nullable ShimmerSkeleton skeleton) {
+    mSkeleton = skeleton;
+    requestLayout();
+    updateBonePath();
+    return this;
+  }
+
+  public @Nullable ShimmerSkeleton getSkeleton() {
+    return mSkeleton;
+  }
+
+  /**
+   * Sets the color of the bones. Alpha shimmers modulate its alpha, color shimmers use their own
+   * colors within the bones.
+   */
+  public ShimmerSkeletonView setBoneColor(@ColorInt int color) {
+    mShimmerDrawable.setDirectColor(color);
+    return this;
+  }
+
+  public @ColorInt int getBoneColor() {
+    return mShimmerDrawable.getDirectColor();
+  }
+
+  /** Starts the shimmer animation. */
+  public void startShimmer() {
+    if (isAttachedToWindow()) {
+      mShimmerDrawable.startShimmer();
+      mVisibilityTracker.updateFrameRateHint();
+    }
+  }
+
+  /** Stops the shimmer animation. */
+  public void stopShimmer() {
+    mVisibilityTracker.onShimmerStopped();
+    mShimmerDrawable.stopShimmer();
+  }
+
+  /** Return whether the shimmer animation has been started. */
+  public boolean isShimmerStarted() {
+    return mShimmerDrawable.isShimmerStarted();
+  }
+
+  public boolean isShimmerRunning() {
+    return mShimmerDrawable.isShimmerRunning();
+  }
+
+  /**
+   * Sets whether the shimmer pauses while this view is scrolled entirely out of the window, for
+   * example inside a ScrollView. It resumes where it left off once any part of the view is visible
+   * again. Enabled by default.
+   */
+  public ShimmerSkeletonView setPauseWhenClipped(boolean pauseWhenClipped) {
+    mVisibilityTracker.setPauseWhenClipped(pauseWhenClipped);
+    return this;
+  }
+
+  public boolean isPauseWhenClipped() {
+    return mVisibilityTracker.isPauseWhenClipped();
+  }
+
+  /**
+   * Sets whether the shimmer also stops while the window has lost focus, for example to another
+   * app in multi-window mode. It always stops while the window is hidden. Disabled by default.
+   */
+  public ShimmerSkeletonView setPauseOnWindowFocusLoss(boolean pauseOnWindowFocusLoss) {
+    mVisibilityTracker.setPauseOnWindowFocusLoss(pauseOnWindowFocusLoss);
+    return this;
+  }
+
+  public boolean isPauseOnWindowFocusLoss() {
+    return mVisibilityTracker.isPauseOnWindowFocusLoss();
+  }
+
+  public void setStaticAnimationProgress(float value) {
+    mShimmerDrawable.setStaticAnimationProgress(value);
+  }
+
+  public void clearStaticAnimationProgress() {
+    mShimmerDrawable.clearStaticAnimationProgress();
+  }
+
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    final int contentWidth = mSkeleton != null ? mSkeleton.getContentWidth() : 0;
+    final int contentHeight = mSkeleton != null ? mSkeleton.getContentHeight() : 0;
+    setMeasuredDimension(
+        resolveSize(
+            Math.max(
+                getSuggestedMinimumWidth(), contentWidth + getPaddingLeft() + getPaddingRight()),
+            widthMeasureSpec),
+        resolveSize(
+            Math.max(
+                getSuggestedMinimumHeight(), contentHeight + getPaddingTop() + getPaddingBottom()),
+            heightMeasureSpec));
+  }
+
+  @Override
+  protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    super.onSizeChanged(w, h, oldw, oldh);
+    mShimmerDrawable.setBounds(0, 0, w, h);
+    updateBonePath();
+  }
+
+  @Override
+  protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+    super.onVisibilityChanged(changedView, visibility);
+    // View's constructor directly invokes this method, in which case no fields on
+    // this class have been fully initialized yet.
+    if (mVisibilityTracker == null) {
+      return;
+    }
+    mVisibilityTracker.update();
+  }
+
+  @Override
+  protected void onWindowVisibilityChanged(int visibility) {
+    super.onWindowVisibilityChanged(visibility);
+    // Covered by another activity, or the app went to the background
+    mVisibilityTracker.update();
+  }
+
+  @Override
+  public void onWindowFocusChanged(boolean hasWindowFocus) {
+    super.onWindowFocusChanged(hasWindowFocus);
+    mVisibilityTracker.update();
+  }
+
+  @Override
+  public void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    mShimmerDrawable.maybeStartShimmer();
+    mVisibilityTracker.setTracking(true);
+  }
+
+  @Override
+  public void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    mVisibilityTracker.setTracking(false);
+    stopShimmer();
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    super.onDraw(canvas);
+    mShimmerDrawable.draw(canvas);
+  }
+
+  ShimmerDrawable getShimmerDrawable() {
+    return mShimmerDrawable;
+  }
+
+  @Override
+  protected boolean verifyDrawable(@NonNull Drawable who) {
+    return super.verifyDrawable(who) || who == mShimmerDrawable;
+  }
+
+  private void updateBonePath() {
+    mBonePath.rewind();
+    final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+    final int height = getHeight() - getPaddingTop() - getPaddingBottom();
+    if (mSkeleton != null && width > 0 && height > 0) {
+      mSkeleton.addToPath(mBonePath, width, height, mTempRect);
+      mBonePath.offset(getPaddingLeft(), getPaddingTop());
+    }
+    mShimmerDrawable.invalidateSelf();
+  }
+}
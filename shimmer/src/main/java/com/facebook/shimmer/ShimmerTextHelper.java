@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.view.View;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Shimmers the text of a {@link TextView} by installing the shimmer gradient as the shader of its
+ * {@link TextPaint}. Frames only move the shader, so the text is drawn in a single pass, without
+ * wrapping it in a {@link ShimmerFrameLayout} and its layer.
+ *
+ * <p>The gradient is tinted with the current text color for alpha shimmers, color shimmers use
+ * their own colors. Like the layout, the shimmer stops while the text is hidden and pauses while
+ * it is scrolled out of the window.
+ */
+public final class ShimmerTextHelper {
+  private final View.OnLayoutChangeListener mLayoutChangeListener =
+      new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(
+            View v,
+            int left,
+            int top,
+            int right,
+            int bottom,
+            int oldLeft,
+            int oldTop,
+            int oldRight,
+            int oldBottom) {
+          mShimmerDrawable.setBounds(0, 0, right - left, bottom - top);
+          updateTextPaint();
+        }
+      };
+
+  private final View.OnAttachStateChangeListener mAttachStateChangeListener =
+      new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+          mShimmerDrawable.maybeStartShimmer();
+          mVisibilityTracker.setTracking(true);
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+          mVisibilityTracker.setTracking(false);
+          mShimmerDrawable.stopShimmer();
+        }
+      };
+
+  private final Drawable.Callback mDrawableCallback =
+      new Drawable.Callback() {
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+          updateTextPaint();
+          mTextView.invalidate();
+          mVisibilityTracker.onShimmerFrame();
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+          mTextView.scheduleDrawable(who, what, when);
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+          mTextView.unscheduleDrawable(who, what);
+        }
+      };
+
+  private final TextView mTextView;
+  private final ShimmerDrawable mShimmerDrawable = new ShimmerDrawable();
+  private final ShimmerVisibilityTracker mVisibilityTracker;
+
+  private boolean mAttached;
+
+  public ShimmerTextHelper(@NonNull TextView textView) {
+    mTextView = textView;
+    mVisibilityTracker = new ShimmerVisibilityTracker(textView, mShimmerDrawable, null);
+    mShimmerDrawable.setDirectMode(true);
+    mShimmerDrawable.setShimmer(new Shimmer.AlphaHighlightBuilder().build());
+  }
+
+  public ShimmerTextHelper setShimmer(@Nullable Shimmer shimmer) {
+    mShimmerDrawable.setShimmer(shimmer);
+    mVisibilityTracker.update();
+    return this;
+  }
+
+  public @Nullable Shimmer getShimmer() {
+    return mShimmerDrawable.getShimmer();
+  }
+
+  /** See {@link ShimmerDrawable#setShimmerClock(ShimmerClock)}. */
+  public ShimmerTextHelper setShimmerClock(@Nullable ShimmerClock clock) {
+    mShimmerDrawable.setShimmerClock(clock);
+    return this;
+  }
+
+  /** Installs the shimmer on the text, starting it if the Shimmer auto-starts. */
+  public void attach() {
+    if (mAttached) {
+      return;
+    }
+    mAttached = true;
+    mShimmerDrawable.setCallback(mDrawableCallback);
+    mTextView.addOnLayoutChangeListener(mLayoutChangeListener);
+    mTextView.addOnAttachStateChangeListener(mAttachStateChangeListener);
+    mShimmerDrawable.setBounds(0, 0, mTextView.getWidth(), mTextView.getHeight());
+    updateTextPaint();
+    if (mTextView.getWindowToken() != null) {
+      mShimmerDrawable.maybeStartShimmer();
+      mVisibilityTracker.setTracking(true);
+    }
+    mTextView.invalidate();
+  }
+
+  /** Stops the shimmer and gives the text its plain paint back. */
+  public void detach() {
+    if (!mAttached) {
+      return;
+    }
+    mAttached = false;
+    mVisibilityTracker.setTracking(false);
+    mShimmerDrawable.stopShimmer();
+    mShimmerDrawable.setCallback(null);
+    mTextView.removeOnLayoutChangeListener(mLayoutChangeListener);
+    mTextView.removeOnAttachStateChangeListener(mAttachStateChangeListener);
+    mTextView.getPaint().setShader(null);
+    mTextView.invalidate();
+  }
+
+  public boolean isAttached() {
+    return mAttached;
+  }
+
+  /** Starts the shimmer animation. */
+  public void startShimmer() {
+    if (mAttached && mTextView.getWindowToken() != null) {
+      mShimmerDrawable.startShimmer();
+    }
+  }
+
+  /** Stops the shimmer animation. */
+  public void stopShimmer() {
+    mVisibilityTracker.onShimmerStopped();
+    mShimmerDrawable.stopShimmer();
+  }
+
+  /** Return whether the shimmer animation has been started. */
+  public boolean isShimmerStarted() {
+    return mShimmerDrawable.isShimmerStarted();
+  }
+
+  /**
+   * Sets whether the shimmer pauses while the text is scrolled entirely out of the window, for
+   * example inside a ScrollView. It resumes where it left off once any part of the text is visible
+   * again. Enabled by default.
+   */
+  public ShimmerTextHelper setPauseWhenClipped(boolean pauseWhenClipped) {
+    mVisibilityTracker.setPauseWhenClipped(pauseWhenClipped);
+    return this;
+  }
+
+  public boolean isPauseWhenClipped() {
+    return mVisibilityTracker.isPauseWhenClipped();
+  }
+
+  /**
+   * Sets whether the shimmer also stops while the window has lost focus, for example to another
+   * app in multi-window mode. It always stops while the window is hidden. Disabled by default.
+   */
+  public ShimmerTextHelper setPauseOnWindowFocusLoss(boolean pauseOnWindowFocusLoss) {
+    mVisibilityTracker.setPauseOnWindowFocusLoss(pauseOnWindowFocusLoss);
+    return this;
+  }
+
+  public boolean isPauseOnWindowFocusLoss() {
+    return mVisibilityTracker.isPauseOnWindowFocusLoss();
+  }
+
+  public void setStaticAnimationProgress(float value) {
+    mShimmerDrawable.setStaticAnimationProgress(value);
+  }
+
+  public void clearStaticAnimationProgress() {
+    mShimmerDrawable.clearStaticAnimationProgress();
+  }
+
+  /** Positions the gradient for the current frame and makes sure the text draws with it. */
+  private void updateTextPaint() {
+    if (!mAttached) {
+      return;
+    }
+    // The text paint's own alpha still applies on top of the shader, so only take its color
+    mShimmerDrawable.setDirectColor(mTextView.getCurrentTextColor() | Color.BLACK);
+    final Paint directPaint = mShimmerDrawable.getDirectPaint();
+    final TextPaint textPaint = mTextView.getPaint();
+    final Shader shader = directPaint != null ? directPaint.getShader() : null;
+    if (textPaint.getShader() != shader) {
+      textPaint.setShader(shader);
+    }
+  }
+}
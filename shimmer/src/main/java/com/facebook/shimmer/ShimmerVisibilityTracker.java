@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.shimmer;
+
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Follows the visibility of a view hosting a shimmer, for the layouts and views as well as the
+ * helpers. The shimmer stops while the view or its window is hidden, and optionally while the
+ * window has lost focus, and starts again once it is shown. It pauses while the view is scrolled
+ * entirely out of the window. The Shimmer's max frame rate is only requested for the view while
+ * the shimmer runs, and window aligned Shimmers are told where the view sits in its window.
+ *
+ * <p>Views hosting the shimmer forward their visibility and focus callbacks to {@link #update()}.
+ * Helpers cannot override those callbacks, so for them hiding is noticed on the shimmer's next
+ * frame through {@link #onShimmerFrame()}, which only reads the visibility flags. Whether
+ * the view is scrolled out of the window is only worked out again once the window scrolls or lays
+ * out. Showing is noticed on the window's next draw, which is only listened to while the shimmer
+ * is stopped. Before Jellybean MR2 regaining focus is also only noticed on the next draw.
+ */
+final class ShimmerVisibilityTracker {
+  /** Receives a callback whenever the tracker stops, starts, pauses or resumes the shimmer. */
+  interface Callback {
+    void onShimmerStateChanged();
+  }
+
+  private final ViewTreeObserver.OnPreDrawListener mPreDrawListener =
+      new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+          update();
+          return true;
+        }
+      };
+
+  private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+      new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+          update();
+          updateWindowGeometry();
+        }
+      };
+
+  private final ViewTreeObserver.OnGlobalLayoutListener mGlobalLayoutListener =
+      new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+          update();
+          updateWindowGeometry();
+        }
+      };
+
+  private final View mView;
+  private final ShimmerDrawable mShimmerDrawable;
+  private final @Nullable Callback mCallback;
+  private final Rect mVisibleRect = new Rect();
+  private final int[] mWindowLocation = new int[2];
+  private final ShimmerFrameRateHint mFrameRateHint;
+
+  private @Nullable Object mWindowFocusListener;
+  private boolean mTracking;
+  private boolean mPreDrawListenerAdded;
+  private boolean mPauseWhenClipped = true;
+  private boolean mPauseOnWindowFocusLoss = false;
+  private boolean mStoppedShimmerBecauseVisibility = false;
+  private boolean mPausedShimmerBecauseClipped = false;
+
+  ShimmerVisibilityTracker(
+      @NonNull View view, @NonNull ShimmerDrawable shimmerDrawable, @Nullable Callback callback) {
+    mView = view;
+    mShimmerDrawable = shimmerDrawable;
+    mCallback = callback;
+    mFrameRateHint = new ShimmerFrameRateHint(view);
+  }
+
+  /** Starts or stops observing the view's window. Only track while the view is attached to it. */
+  void setTracking(boolean tracking) {
+    if (tracking == mTracking) {
+      return;
+    }
+    mTracking = tracking;
+    final ViewTreeObserver observer = mView.getViewTreeObserver();
+    if (tracking) {
+      observer.addOnScrollChangedListener(mScrollChangedListener);
+      observer.addOnGlobalLayoutListener(mGlobalLayoutListener);
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+        mWindowFocusListener = WindowFocusListener.add(observer, this);
+      }
+      updateWindowGeometry();
+      update();
+    } else {
+      observer.removeOnScrollChangedListener(mScrollChangedListener);
+      removeGlobalLayoutListener(observer);
+      if (mWindowFocusListener != null) {
+        WindowFocusListener.remove(observer, mWindowFocusListener);
+        mWindowFocusListener = null;
+      }
+      onShimmerStopped();
+    }
+  }
+
+  void setPauseWhenClipped(boolean pauseWhenClipped) {
+    mPauseWhenClipped = pauseWhenClipped;
+    update();
+  }
+
+  boolean isPauseWhenClipped() {
+    return mPauseWhenClipped;
+  }
+
+  void setPauseOnWindowFocusLoss(boolean pauseOnWindowFocusLoss) {
+    mPauseOnWindowFocusLoss = pauseOnWindowFocusLoss;
+    update();
+  }
+
+  boolean isPauseOnWindowFocusLoss() {
+    return mPauseOnWindowFocusLoss;
+  }
+
+  /** Forgets why the shimmer was stopped or paused, after it was stopped explicitly. */
+  void onShimmerStopped() {
+    setStoppedShimmerBecauseVisibility(false);
+    mPausedShimmerBecauseClipped = false;
+    mFrameRateHint.update(null);
+  }
+
+  /** Requests the frame rate of a running shimmer, after it was started or stopped explicitly. */
+  void updateFrameRateHint() {
+    final boolean running = mTracking && mShimmerDrawable.isShimmerStarted();
+    mFrameRateHint.update(running ? mShimmerDrawable.getShimmer() : null);
+  }
+
+  /** Tells a window aligned Shimmer where the view sits in its window. */
+  void updateWindowGeometry() {
+    final Shimmer shimmer = mShimmerDrawable.getShimmer();
+    if (shimmer == null || !shimmer.windowAligned || mView.getWindowToken() == null) {
+      return;
+    }
+    mView.getLocationInWindow(mWindowLocation);
+    final View root = mView.getRootView();
+    mShimmerDrawable.setWindowGeometry(
+        mWindowLocation[0], mWindowLocation[1], root.getWidth(), root.getHeight());
+  }
+
+  /**
+   * Stops the shimmer once the view or its window is hidden, for a frame of the shimmer. Unlike
+   * {@link #update()}, this only reads the visibility flags, and does not work out whether the view
+   * is scrolled out of the window.
+   */
+  void onShimmerFrame() {
+    if (!mTracking) {
+      return;
+    }
+    if (!mStoppedShimmerBecauseVisibility && !isVisible() && updateShimmer()) {
+      onShimmerStateChanged();
+    }
+    updateFrameRateHint();
+  }
+
+  /**
+   * Stops, restarts, pauses or resumes the shimmer for the view's current visibility, and requests
+   * the frame rate of a running one.
+   */
+  void update() {
+    if (!mTracking) {
+      return;
+    }
+    if (updateShimmer()) {
+      onShimmerStateChanged();
+    }
+    updateFrameRateHint();
+  }
+
+  private void onShimmerStateChanged() {
+    if (mCallback != null) {
+      mCallback.onShimmerStateChanged();
+    }
+  }
+
+  private boolean isVisible() {
+    return mView.isShown()
+        && mView.getWindowVisibility() == View.VISIBLE
+        && (!mPauseOnWindowFocusLoss || mView.hasWindowFocus());
+  }
+
+  /** Return whether the shimmer was stopped, started, paused or resumed. */
+  private boolean updateShimmer() {
+    final boolean visible = isVisible();
+    boolean changed = false;
+    if (mStoppedShimmerBecauseVisibility) {
+      if (!visible) {
+        return false;
+      }
+      setStoppedShimmerBecauseVisibility(false);
+      // Only started shimmers were stopped, so start again whether or not it auto-starts
+      mShimmerDrawable.startShimmer();
+      changed = true;
+    } else if (!visible) {
+      if (!mShimmerDrawable.isShimmerPending()) {
+        return false;
+      }
+      mShimmerDrawable.stopShimmer();
+      mPausedShimmerBecauseClipped = false;
+      setStoppedShimmerBecauseVisibility(true);
+      return true;
+    }
+
+    if (mPausedShimmerBecauseClipped) {
+      if (!mPauseWhenClipped || mView.getGlobalVisibleRect(mVisibleRect)) {
+        mPausedShimmerBecauseClipped = false;
+        mShimmerDrawable.resumeShimmer();
+        changed = true;
+      }
+    } else if (mPauseWhenClipped
+        && mShimmerDrawable.isShimmerStarted()
+        && !mView.getGlobalVisibleRect(mVisibleRect)) {
+      mPausedShimmerBecauseClipped = true;
+      mShimmerDrawable.pauseShimmer();
+      changed = true;
+    }
+    return changed;
+  }
+
+  /**
+   * Only a stopped shimmer needs to hear about the window's draws, which follow the view or its
+   * window being shown again.
+   */
+  private void setStoppedShimmerBecauseVisibility(boolean stopped) {
+    mStoppedShimmerBecauseVisibility = stopped;
+    final boolean added = stopped && mTracking;
+    if (added == mPreDrawListenerAdded) {
+      return;
+    }
+    mPreDrawListenerAdded = added;
+    if (added) {
+      mView.getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+    } else {
+      mView.getViewTreeObserver().removeOnPreDrawListener(mPreDrawListener);
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  private void removeGlobalLayoutListener(ViewTreeObserver observer) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      observer.removeOnGlobalLayoutListener(mGlobalLayoutListener);
+    } else {
+      observer.removeGlobalOnLayoutListener(mGlobalLayoutListener);
+    }
+  }
+
+  /** Only loaded on Jellybean MR2 and newer, where the listener interface exists. */
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+  private static final class WindowFocusListener
+      implements ViewTreeObserver.OnWindowFocusChangeListener {
+    private final ShimmerVisibilityTracker mTracker;
+
+    private WindowFocusListener(ShimmerVisibilityTracker tracker) {
+      mTracker = tracker;
+    }
+
+    static Object add(ViewTreeObserver observer, ShimmerVisibilityTracker tracker) {
+      final WindowFocusListener listener = new WindowFocusListener(tracker);
+      observer.addOnWindowFocusChangeListener(listener);
+      return listener;
+    }
+
+    static void remove(ViewTreeObserver observer, Object listener) {
+      observer.removeOnWindowFocusChangeListener((WindowFocusListener) listener);
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+      mTracker.update();
+    }
+  }
+}